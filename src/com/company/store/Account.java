@@ -0,0 +1,62 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.util.*;
+
+/**
+ * Registered account of a store user, holding only the credentials needed to log in. The user's
+ * session and cart are created by the StoreManager on their first login
+ * @author Julian Nicolai 101154233
+ */
+public class Account {
+
+    /**
+     * Username of the user as registered (for login only, not case sensitive)
+     */
+    private final String username;
+
+    /**
+     * Password of the user (for login only)
+     */
+    private final char[] password;
+
+    /**
+     * Constructor for an account with the given credentials
+     * @param username String username of the user
+     * @param password String password of the user
+     */
+    public Account(String username, String password) {
+
+        if (username.toLowerCase(Locale.ROOT).equals("username")) {
+            throw new IllegalArgumentException("Illegal username: cannot be 'username'");
+        } else if (password.equals("--------")) {
+            throw new IllegalArgumentException("Illegal password: cannot be '--------'");
+        }
+
+        this.username = username;
+        this.password = password.toCharArray();
+    }
+
+    /**
+     * Method to fold a username to the form accounts are indexed by, so usernames differing only in
+     * case belong to the same account
+     * @param username String username to fold
+     * @return String folded username
+     */
+    public static String foldUsername(String username) { return username.toLowerCase(Locale.ROOT); }
+
+    /**
+     * Method to retrieve the username as registered
+     * @return String username
+     */
+    public String getUsername() { return username; }
+
+    /**
+     * Method to verify the password parameter is equal to the account's password
+     * @param givenPassword character array password to test
+     * @return boolean match
+     */
+    public boolean verifyPassword(char[] givenPassword) { return Arrays.equals(givenPassword, password); }
+
+}
@@ -0,0 +1,92 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Check that the hot paths of the store allocate nothing, whether the product looked up exists or
+ * not. Runs a steady workload of stock and cart calls through a StoreManager, warming each call up
+ * first so it is compiled, then counts the bytes the thread allocates over many more calls and
+ * fails if any call allocates more than MAX_BYTES_PER_CALL on average. A miss once built a sentinel
+ * ProductEntry, and with it a Product and a random UUID, on every call
+ * <pre>
+ * java com.company.store.AllocationCheck [calls per operation]
+ * </pre>
+ * @author Julian Nicolai 101154233
+ */
+public class AllocationCheck {
+
+    /**
+     * Largest average number of bytes a call may allocate; above 0 only to absorb allocations
+     * unrelated to the call, such as by the JIT compiler on the measured thread
+     */
+    private static final double MAX_BYTES_PER_CALL = 0.5;
+
+    /**
+     * Operation of the workload
+     * @param name String name to report the operation under
+     * @param call Runnable making one call
+     */
+    private record Operation(String name, Runnable call) { }
+
+    /**
+     * Method to run the check
+     * @param args optional number of measured calls per operation (default 1000000)
+     */
+    public static void main(String[] args) {
+
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported())
+            throw new UnsupportedOperationException("This JVM does not count allocated memory per thread.");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        StoreManager store = new StoreManager();
+        Product product = store.getProductStockInfo().get(0).getProduct();
+        Product missing = new Product("Missing", 1, null, "Never added");
+        UUID missingID = missing.getID();
+        store.addProductQuantity(product, 1000);
+
+        // the cart always keeps a unit, so adding and removing one changes an existing entry
+        ShoppingCart cart = new ShoppingCart(store);
+        cart.addProductQuantity(product, 1);
+
+        long[] sink = new long[1];
+        List<Operation> operations = List.of(
+                new Operation("StoreManager.getProductQuantity (hit)", () -> sink[0] += store.getProductQuantity(product)),
+                new Operation("StoreManager.containsProduct (miss)", () -> sink[0] += store.containsProduct(missing) ? 1 : 0),
+                new Operation("StoreManager.getProduct (miss)", () -> sink[0] += store.getProduct(missingID) != null ? 1 : 0),
+                new Operation("StoreManager add and remove", () -> {
+                    store.addProductQuantity(product, 1);
+                    store.removeProductQuantity(product, 1);
+                }),
+                new Operation("ShoppingCart.getProductQuantity (hit)", () -> sink[0] += cart.getProductQuantity(product)),
+                new Operation("ShoppingCart.containsProduct (miss)", () -> sink[0] += cart.containsProduct(missing) ? 1 : 0),
+                new Operation("ShoppingCart add and remove", () -> {
+                    cart.addProductQuantity(product, 1);
+                    cart.removeProductQuantity(product, 1);
+                }),
+                new Operation("ShoppingCart.getTotalCents", () -> sink[0] += cart.getTotalCents()));
+
+        long threadID = Thread.currentThread().getId();
+        List<String> failures = new ArrayList<>();
+        for (Operation operation : operations) {
+            for (int i = 0; i < calls; i++) operation.call().run();
+
+            long before = threads.getThreadAllocatedBytes(threadID);
+            for (int i = 0; i < calls; i++) operation.call().run();
+            double bytesPerCall = (threads.getThreadAllocatedBytes(threadID) - before) / (double) calls;
+
+            System.out.printf("%-40s %8.3f bytes/call%n", operation.name(), bytesPerCall);
+            if (bytesPerCall > MAX_BYTES_PER_CALL) failures.add(operation.name());
+        }
+
+        if (sink[0] == 0) throw new AssertionError("No stock was read.");
+        if (!failures.isEmpty()) throw new AssertionError("Allocations regressed in " + String.join(", ", failures) + ".");
+        System.out.println("No operation allocates.");
+    }
+
+}
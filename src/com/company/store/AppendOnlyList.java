@@ -0,0 +1,73 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.util.*;
+
+/**
+ * List that can only grow at its end, for many readers and one writer at a time. Elements are
+ * stored in segments that double in size, so adding never copies what is already stored and takes
+ * constant time; reads take no lock and never see a partly added element. Iterating while elements
+ * are added is safe and may include the new ones
+ * @param <E> type of element
+ * @author Julian Nicolai 101154233
+ */
+public class AppendOnlyList<E> extends AbstractList<E> implements RandomAccess {
+
+    /**
+     * Size of the first segment as a power of two
+     */
+    private static final int FIRST_SEGMENT_BITS = 4;
+
+    /**
+     * Segments of elements, segment k holding 2^(k + FIRST_SEGMENT_BITS) elements, allocated as needed
+     */
+    private final Object[][] segments = new Object[Integer.SIZE - FIRST_SEGMENT_BITS][];
+
+    /**
+     * Number of elements; written after the element it counts so readers only see added elements
+     */
+    private volatile int size;
+
+    /**
+     * Method to retrieve an element
+     * @param index int position of the element
+     * @return E element at the position
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        Objects.checkIndex(index, size);
+        int position = index + (1 << FIRST_SEGMENT_BITS);
+        int segment = Integer.SIZE - 1 - Integer.numberOfLeadingZeros(position) - FIRST_SEGMENT_BITS;
+        return (E) segments[segment][position - (1 << (segment + FIRST_SEGMENT_BITS))];
+    }
+
+    /**
+     * Method to retrieve the number of elements
+     * @return int number of elements
+     */
+    @Override
+    public int size() { return size; }
+
+    /**
+     * Method to add an element at the end of the list
+     * @param element E element to add
+     * @return boolean always true
+     */
+    @Override
+    public synchronized boolean add(E element) {
+
+        int index = size;
+        if (index == Integer.MAX_VALUE - (1 << FIRST_SEGMENT_BITS)) throw new IllegalStateException("List is full.");
+
+        int position = index + (1 << FIRST_SEGMENT_BITS);
+        int segment = Integer.SIZE - 1 - Integer.numberOfLeadingZeros(position) - FIRST_SEGMENT_BITS;
+        if (segments[segment] == null) segments[segment] = new Object[1 << (segment + FIRST_SEGMENT_BITS)];
+
+        segments[segment][position - (1 << (segment + FIRST_SEGMENT_BITS))] = element;
+        size = index + 1;
+        return true;
+    }
+
+}
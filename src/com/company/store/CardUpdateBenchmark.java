@@ -0,0 +1,148 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.lang.management.ManagementFactory;
+import javax.swing.*;
+
+/**
+ * Microbenchmark of the cost of a click on the widgets of the store. A click adds a unit of a
+ * product to a cart, or takes it back out, and then updates the widgets StoreView updates: the
+ * units spinner of the product's CartCard and the stock label and spinner of its product card's
+ * StockDisplay. Clicks are timed with and without the widget updates, so the update cost per click
+ * is the difference, and the bytes the updates allocate are counted. Two kinds of click are timed:
+ * another shopper's, which only changes the stock the widgets show, and the user's own, which also
+ * changes the units in the user's cart. The benchmark fails if a stock update allocates more than
+ * MAX_BYTES_PER_STOCK_UPDATE, as resizing the label or notifying the spinners would. Runs
+ * headless, as the widgets are never shown
+ * <pre>
+ * java com.company.store.CardUpdateBenchmark [clicks]
+ * </pre>
+ * @author Julian Nicolai 101154233
+ */
+public class CardUpdateBenchmark {
+
+    /**
+     * Largest average number of bytes the widget updates of another shopper's click may allocate:
+     * the stock label's new text and the event announcing it. The spinners' limits change without
+     * notifying them, as a notification has the spinner's editor reformat its text, about a kilobyte
+     * in Swing; the user's own clicks change the units shown in the cart, so they do reformat it
+     */
+    private static final double MAX_BYTES_PER_STOCK_UPDATE = 128;
+
+    /**
+     * Number of clicks of each kind made before timing, whatever the number measured, so the clicks
+     * are fully compiled and what they allocate is not counted while still interpreted
+     */
+    private static final int WARM_UP_CLICKS = 200_000;
+
+    /**
+     * Method to run the benchmark
+     * @param args optional number of measured clicks of each kind (default 200000)
+     */
+    public static void main(String[] args) {
+
+        System.setProperty("java.awt.headless", "true");
+        int clicks = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        StoreManager store = new StoreManager();
+        Product product = store.getProductStockInfo().get(0).getProduct();
+        store.addProductQuantity(product, 1_000_000);
+        ShoppingCart cart = new ShoppingCart(store);
+        cart.addProductQuantity(product, 1);
+        ShoppingCart otherCart = new ShoppingCart(store);
+
+        // the widgets are laid out as a product card and a cart entry lay them out
+        JLabel stockLabel = new JLabel();
+        stockLabel.setBorder(BorderFactory.createTitledBorder("Stock"));
+        StoreView.UnitSpinnerModel productUnits = new StoreView.UnitSpinnerModel(0, 0);
+        new JSpinner(productUnits);
+        StoreView.StockDisplay stockDisplay = new StoreView.StockDisplay(stockLabel, productUnits);
+        stockDisplay.setStock(store.getProductQuantity(product));
+
+        int stock = store.getProductQuantity(product);
+        StoreView.UnitSpinnerModel cartUnits = new StoreView.UnitSpinnerModel(1, 1 + stock);
+        new JSpinner(cartUnits);
+        StoreView.CartCard cartCard = new StoreView.CartCard(new JPanel(), cartUnits);
+
+        double[] stockUpdate = measure(store, otherCart, cart, product, clicks, stockDisplay, cartCard);
+        double[] ownClick = measure(store, cart, cart, product, clicks, stockDisplay, cartCard);
+
+        System.out.printf("%-22s %14s %14s %14s %14s%n", "click", "store ns", "click ns", "update ns", "update bytes");
+        System.out.printf("%-22s %14.1f %14.1f %14.1f %14.1f%n", "another shopper's", stockUpdate[0], stockUpdate[1],
+                stockUpdate[1] - stockUpdate[0], stockUpdate[2]);
+        System.out.printf("%-22s %14.1f %14.1f %14.1f %14.1f%n", "the user's own", ownClick[0], ownClick[1],
+                ownClick[1] - ownClick[0], ownClick[2]);
+
+        if (cart.getProductQuantity(product) != 1 || !stockLabel.getText().equals(Integer.toString(stock))
+                || !cartUnits.getValue().equals(1) || !cartUnits.getMaximum().equals(1 + stock))
+            throw new AssertionError("The widgets do not show the stock and cart the clicks left.");
+        if (stockUpdate[2] > MAX_BYTES_PER_STOCK_UPDATE)
+            throw new AssertionError(String.format("A stock update allocates %.1f bytes, more than %.0f.",
+                    stockUpdate[2], MAX_BYTES_PER_STOCK_UPDATE));
+    }
+
+    /**
+     * Method to time clicks on a cart with and without the widget updates, after warming up both
+     * @param store StoreManager the carts take stock from
+     * @param clickedCart ShoppingCart clicked on
+     * @param cart ShoppingCart of the user, whose units the CartCard shows
+     * @param product Product added and removed
+     * @param clicks int number of measured clicks
+     * @param stockDisplay StoreView.StockDisplay of the product's card
+     * @param cartCard StoreView.CartCard of the product's entry in the user's cart
+     * @return double[] nanoseconds per click without and with the updates, and bytes the updates
+     *         allocate per click
+     */
+    private static double[] measure(StoreManager store, ShoppingCart clickedCart, ShoppingCart cart, Product product,
+                                    int clicks, StoreView.StockDisplay stockDisplay, StoreView.CartCard cartCard) {
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long threadID = Thread.currentThread().getId();
+
+        // warm up both kinds of click so they are compiled before being timed
+        click(store, clickedCart, cart, product, WARM_UP_CLICKS, null, null);
+        click(store, clickedCart, cart, product, WARM_UP_CLICKS, stockDisplay, cartCard);
+
+        long start = System.nanoTime();
+        click(store, clickedCart, cart, product, clicks, null, null);
+        double storeNanos = (System.nanoTime() - start) / (double) clicks;
+
+        long allocated = threads.getThreadAllocatedBytes(threadID);
+        start = System.nanoTime();
+        click(store, clickedCart, cart, product, clicks, stockDisplay, cartCard);
+        double clickNanos = (System.nanoTime() - start) / (double) clicks;
+        allocated = threads.getThreadAllocatedBytes(threadID) - allocated;
+
+        // the store calls allocate nothing, so what was allocated was allocated by the updates
+        return new double[] { storeNanos, clickNanos, allocated / (double) clicks };
+    }
+
+    /**
+     * Method to click a number of times, adding a unit to a cart on even clicks and taking it back
+     * out on odd ones, updating the widgets after each click as StoreView does if they are given
+     * @param store StoreManager the carts take stock from
+     * @param clickedCart ShoppingCart clicked on
+     * @param cart ShoppingCart of the user, whose units the CartCard shows
+     * @param product Product added and removed
+     * @param clicks int number of clicks, even so the carts end as they started
+     * @param stockDisplay StoreView.StockDisplay of the product's card, null to skip the updates
+     * @param cartCard StoreView.CartCard of the product's cart entry, null to skip the updates
+     */
+    private static void click(StoreManager store, ShoppingCart clickedCart, ShoppingCart cart, Product product, int clicks,
+                              StoreView.StockDisplay stockDisplay, StoreView.CartCard cartCard) {
+
+        for (int i = 0; i < (clicks & ~1); i++) {
+            if ((i & 1) == 0) clickedCart.addProductQuantity(product, 1);
+            else clickedCart.removeProductQuantity(product, 1);
+
+            if (stockDisplay != null) {
+                int stock = store.getProductQuantity(product);
+                cartCard.setUnits(cart.getProductQuantity(product), stock);
+                stockDisplay.refreshStock(stock);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+/**
+ * Exception thrown when a ShoppingCart is checked out after its reservation expired and the
+ * ReservationReclaimer returned its stock to the store
+ * @author Julian Nicolai 101154233
+ */
+public class CartExpiredException extends IllegalArgumentException {
+
+    /**
+     * Serialization version of the exception, as exceptions are Serializable
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor for a CartExpiredException
+     * @param message String detail message
+     */
+    public CartExpiredException(String message) { super(message); }
+
+}
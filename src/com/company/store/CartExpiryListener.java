@@ -0,0 +1,20 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+/**
+ * Interface for objects notified when a ShoppingCart's reservation expires. Notifications are made
+ * on the ReservationReclaimer's thread while it holds the cart's lock, so listeners must be quick
+ * and must not block
+ * @author Julian Nicolai 101154233
+ */
+public interface CartExpiryListener {
+
+    /**
+     * Method called after a cart goes unused for the reservation time, once any stock it held has
+     * been returned to the store
+     * @param cart ShoppingCart that expired
+     */
+    void cartExpired(ShoppingCart cart);
+
+}
@@ -0,0 +1,353 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Binary catalog file of products and their stock, read through a memory mapping. Every product
+ * has a fixed size record (ID, price, stock and the offsets of its strings) followed by a heap of
+ * length prefixed UTF-8 strings, so opening a catalog only reads the records; a product's name,
+ * image and description are decoded the first time they are asked for.
+ * <p>
+ * A catalog file is never overwritten, as it may be mapped: on Windows a mapped file can be neither
+ * replaced nor deleted. Each write makes a new generation file beside the catalog's path, and the
+ * path itself holds a small pointer naming the current generation, which is swapped in with an
+ * atomic rename; the pointer is never mapped, so it can always be replaced. Older generations are
+ * deleted after the switch. One still mapped on Windows cannot be, and is left for a later write to
+ * delete once its mapping is released, which Java only does when the mapping is garbage collected
+ * @author Julian Nicolai 101154233
+ */
+public class CatalogFile {
+
+    /**
+     * Marker at the start of a catalog file
+     */
+    private static final int MAGIC = 0x43415432;
+
+    /**
+     * Marker at the start of a pointer to the current generation of a catalog
+     */
+    private static final int POINTER_MAGIC = 0x43415450;
+
+    /**
+     * Size of the header: magic, product count, and sequence number
+     */
+    private static final int HEADER_SIZE = 4 + 4 + 8;
+
+    /**
+     * Size of each product record: ID, price, stock, and name/image/description offsets
+     */
+    private static final int RECORD_SIZE = 8 + 8 + 8 + 4 + 4 + 4 + 4;
+
+    /**
+     * Mapped contents of the file
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Number of products in the catalog
+     */
+    private final int count;
+
+    /**
+     * Sequence number stored with the catalog, such as the last log record a snapshot includes
+     */
+    private final long sequence;
+
+    /**
+     * Constructor that maps a catalog file
+     * @param path Path of the catalog file
+     */
+    private CatalogFile(Path path) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Catalog file too large to map: " + path);
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Unrecognized catalog file " + path);
+
+        this.count = buffer.getInt(4);
+        this.sequence = buffer.getLong(8);
+    }
+
+    /**
+     * Method to open the current generation of a catalog; the mapping stays valid after later
+     * writes of the catalog
+     * @param path Path of the catalog, a pointer to its current generation or a catalog file itself
+     * @return CatalogFile mapped from the current generation
+     */
+    public static CatalogFile open(Path path) {
+        try {
+            long generation = currentGeneration(path);
+            return new CatalogFile(generation > 0 ? generationPath(path, generation) : path);
+        } catch (IOException err) {
+            throw new UncheckedIOException(err);
+        }
+    }
+
+    /**
+     * Method to read the generation a catalog's pointer names
+     * @param path Path of the catalog
+     * @return long current generation, 0 if there is no pointer at the path
+     */
+    private static long currentGeneration(Path path) throws IOException {
+
+        if (!Files.exists(path)) return 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            return in.readInt() == POINTER_MAGIC ? in.readLong() : 0;
+        }
+    }
+
+    /**
+     * Method to find the file of a generation of a catalog
+     * @param path Path of the catalog
+     * @param generation long generation
+     * @return Path of the generation file beside the catalog's path
+     */
+    private static Path generationPath(Path path, long generation) {
+        return path.resolveSibling(path.getFileName() + "." + generation);
+    }
+
+    /**
+     * Method to retrieve the number of products in the catalog
+     * @return int number of products
+     */
+    public int getNumOfProducts() { return count; }
+
+    /**
+     * Method to retrieve the sequence number stored with the catalog
+     * @return long sequence number
+     */
+    public long getSequence() { return sequence; }
+
+    /**
+     * Method to create an entry for every product in the catalog. Only each product's fixed size
+     * record is read; its strings stay in the mapping until first used
+     * @return List of ProductEntry's in catalog order
+     */
+    public List<ProductEntry> getProductEntries() {
+
+        List<ProductEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int record = HEADER_SIZE + i * RECORD_SIZE;
+            UUID id = new UUID(buffer.getLong(record), buffer.getLong(record + 8));
+            MappedProduct product = new MappedProduct(id, buffer.getDouble(record + 16), record);
+            entries.add(new ProductEntry(product, buffer.getInt(record + 24)));
+        }
+        return entries;
+    }
+
+    /**
+     * Product whose strings are decoded from the catalog mapping when first asked for
+     */
+    private class MappedProduct extends Product {
+
+        /**
+         * Position of the product's record in the mapping
+         */
+        private final int record;
+
+        /**
+         * Decoded name, null until first asked for
+         */
+        private String name;
+
+        /**
+         * Decoded image location, null until first asked for
+         */
+        private String image;
+
+        /**
+         * Decoded description, null until first asked for
+         */
+        private String description;
+
+        /**
+         * Constructor for a MappedProduct
+         * @param id UUID of the product
+         * @param price double price of the product
+         * @param record int position of the product's record
+         */
+        private MappedProduct(UUID id, double price, int record) {
+            super(id, null, price, null, null);
+            this.record = record;
+        }
+
+        @Override
+        public String getName() {
+            if (name == null) name = readString(buffer.getInt(record + 28));
+            return name;
+        }
+
+        @Override
+        public String getImage() {
+            if (image == null) image = readString(buffer.getInt(record + 32));
+            return image;
+        }
+
+        @Override
+        public String getDescription() {
+            if (description == null) description = readString(buffer.getInt(record + 36));
+            return description;
+        }
+    }
+
+    /**
+     * Method to decode a string from the heap
+     * @param offset int position of the string, -1 for null
+     * @return String decoded
+     */
+    private String readString(int offset) {
+
+        if (offset < 0) return null;
+
+        int length = buffer.getInt(offset);
+        byte[] bytes = new byte[length];
+        buffer.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Method to write a new generation of a catalog and make it current, so opening the catalog
+     * sees either the whole of the previous generation or the whole of this one
+     * @param path Path of the catalog
+     * @param entries List of ProductEntry's to write; must not change while writing
+     * @param sequence long sequence number to store with the catalog
+     */
+    public static void write(Path path, List<ProductEntry> entries, long sequence) {
+
+        int count = entries.size();
+        int[] nameOffsets = new int[count];
+        int[] imageOffsets = new int[count];
+        int[] descriptionOffsets = new int[count];
+
+        // a file left by a write that failed before switching the pointer was never opened, so it can be overwritten
+        long generation;
+        try {
+            generation = currentGeneration(path) + 1;
+        } catch (IOException err) {
+            throw new UncheckedIOException(err);
+        }
+        Path newPath = generationPath(path, generation);
+
+        try (FileChannel channel = FileChannel.open(newPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            // strings go after the records, so write them first and remember where each one went
+            long heapStart = HEADER_SIZE + (long) count * RECORD_SIZE;
+            channel.position(heapStart);
+            DataOutputStream heap = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            for (int i = 0; i < count; i++) {
+                Product product = entries.get(i).getProduct();
+                nameOffsets[i] = writeString(heap, heapStart, product.getName());
+                imageOffsets[i] = writeString(heap, heapStart, product.getImage());
+                descriptionOffsets[i] = writeString(heap, heapStart, product.getDescription());
+            }
+            heap.flush();
+
+            channel.position(0);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(MAGIC);
+            out.writeInt(count);
+            out.writeLong(sequence);
+            for (int i = 0; i < count; i++) {
+                ProductEntry productEntry = entries.get(i);
+                Product product = productEntry.getProduct();
+                out.writeLong(product.getID().getMostSignificantBits());
+                out.writeLong(product.getID().getLeastSignificantBits());
+                out.writeDouble(product.getPrice());
+                out.writeInt(productEntry.getStock());
+                out.writeInt(nameOffsets[i]);
+                out.writeInt(imageOffsets[i]);
+                out.writeInt(descriptionOffsets[i]);
+            }
+            out.flush();
+            channel.force(true);
+        } catch (IOException err) {
+            throw new UncheckedIOException(err);
+        }
+
+        switchGeneration(path, generation);
+        deleteOldGenerations(path, generation);
+    }
+
+    /**
+     * Method to point a catalog at a generation, replacing its pointer atomically
+     * @param path Path of the catalog
+     * @param generation long generation to make current, already written and on disk
+     */
+    private static void switchGeneration(Path path, long generation) {
+
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer pointer = ByteBuffer.allocate(4 + 8).putInt(POINTER_MAGIC).putLong(generation).flip();
+            while (pointer.hasRemaining()) channel.write(pointer);
+            channel.force(true);
+        } catch (IOException err) {
+            throw new UncheckedIOException(err);
+        }
+
+        try {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException err) {
+            throw new UncheckedIOException(err);
+        }
+    }
+
+    /**
+     * Method to delete the generations of a catalog older than the current one, leaving any that
+     * cannot be deleted yet, such as those still mapped on Windows, for a later write
+     * @param path Path of the catalog
+     * @param generation long current generation
+     */
+    private static void deleteOldGenerations(Path path, long generation) {
+
+        String prefix = path.getFileName() + ".";
+        Path directory = path.toAbsolutePath().getParent();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (!suffix.matches("[0-9]+") || Long.parseLong(suffix) >= generation) continue;
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException err) {
+                    // still mapped; deleted by a later write
+                }
+            }
+        } catch (IOException err) {
+            // the new generation is current either way, old ones are only taking space
+        }
+    }
+
+    /**
+     * Method to write a length prefixed string to the heap
+     * @param heap DataOutputStream of the heap
+     * @param heapStart long file position the heap starts at
+     * @param string String to write
+     * @return int file position of the string, -1 for null
+     */
+    private static int writeString(DataOutputStream heap, long heapStart, String string) throws IOException {
+
+        if (string == null) return -1;
+
+        long offset = heapStart + heap.size();
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        if (offset + 4 + bytes.length > Integer.MAX_VALUE) throw new IOException("Catalog too large for a single file.");
+
+        heap.writeInt(bytes.length);
+        heap.write(bytes);
+        return (int) offset;
+    }
+
+}
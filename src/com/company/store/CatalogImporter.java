@@ -0,0 +1,721 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bulk importer of products and stock from CSV or JSON lines catalog files into an Inventory. The
+ * file is streamed through a bounded pipeline: the calling thread reads rows into chunks, parser
+ * threads parse and validate chunks in parallel, and each chunk's valid rows are then added with
+ * one addProductQuantities call, in file order so a row can restock a product added further up.
+ * Only a few chunks are held at once, so the importer's memory does not grow with the file. Rows
+ * that cannot be imported are collected and the import carries on.
+ * <p>
+ * Columns (CSV header names or JSON keys) are id, name, price, stock, image and description. A row
+ * whose id is already in the inventory only adds stock; any other row adds a new product, with the
+ * given id if there is one
+ * @author Julian Nicolai 101154233
+ */
+public class CatalogImporter {
+
+    /**
+     * Number of rows handed to a parser at a time
+     */
+    private static final int CHUNK_ROWS = 1024;
+
+    /**
+     * Number of bad rows kept for the report, any more are only counted
+     */
+    private static final int MAX_BAD_ROWS = 1000;
+
+    /**
+     * Number of characters of a bad row kept for the report
+     */
+    private static final int MAX_BAD_ROW_LENGTH = 200;
+
+    /**
+     * Longest a CSV row can grow across lines, so a stray quote cannot pull the rest of the file into one row
+     */
+    private static final int MAX_ROW_LENGTH = 1 << 20;
+
+    /**
+     * Largest price accepted, so the price in cents fits a long
+     */
+    private static final double MAX_PRICE = 1e15;
+
+    /**
+     * Chunk telling a parser there are no more rows
+     */
+    private static final Chunk END = new Chunk(-1, new String[0], new long[0], 0);
+
+    /**
+     * Inventory to import into
+     */
+    private final StockContainer inventory;
+
+    /**
+     * Number of parser threads
+     */
+    private final int parsers;
+
+    /**
+     * Format of a catalog file
+     */
+    public enum Format {
+        /** Comma separated values with a header row, fields may be quoted */
+        CSV,
+        /** One flat JSON object per line */
+        JSON_LINES;
+
+        /**
+         * Method to find the format of a file by its extension (.csv, .jsonl or .ndjson)
+         * @param path Path of the file
+         * @return Format of the file
+         */
+        public static Format of(Path path) {
+            String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) return CSV;
+            if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) return JSON_LINES;
+            throw new IllegalArgumentException("Unrecognized catalog file type: " + path.getFileName());
+        }
+    }
+
+    /**
+     * Row that could not be imported
+     * @param line long line number the row starts on
+     * @param reason String reason it was rejected
+     * @param text String text of the row, shortened if long
+     */
+    public record BadRow(long line, String reason, String text) { }
+
+    /**
+     * Outcome of an import
+     * @param rows long number of rows read, not counting blank lines or the header
+     * @param imported long number of rows added to the inventory
+     * @param bad long number of rows rejected
+     * @param badRows List of the first rejected rows
+     * @param elapsed Duration of the import
+     */
+    public record Report(long rows, long imported, long bad, List<BadRow> badRows, Duration elapsed) {
+
+        /**
+         * Method to retrieve the import rate
+         * @return double rows read per second
+         */
+        public double getRowsPerSecond() { return elapsed.isZero() ? rows : rows / (elapsed.toNanos() / 1e9); }
+
+        /**
+         * Method to describe the import on one line
+         * @return String summary of the import
+         */
+        public String summary() {
+            return String.format("%d rows, %d imported, %d bad in %.2f s (%.0f rows/s)", rows, imported, bad,
+                    elapsed.toNanos() / 1e9, getRowsPerSecond());
+        }
+    }
+
+    /**
+     * Rows handed to a parser
+     * @param sequence long position of the chunk in the file, counting from 0
+     * @param rows array of row texts
+     * @param lines array of the line number each row starts on
+     * @param numRows number of rows in the arrays
+     */
+    private record Chunk(long sequence, String[] rows, long[] lines, int numRows) { }
+
+    /**
+     * Parsed and validated row; whether it names an existing product is only known once it is added
+     * @param line long line number the row starts on
+     * @param text String text of the row
+     * @param id UUID of the product, null if not given
+     * @param name String name of the product, null if not given
+     * @param price double price of the product, NaN if not given
+     * @param stock int stock to add
+     * @param image String image location, null if not given
+     * @param description String description, null if not given
+     */
+    private record Row(long line, String text, UUID id, String name, double price, int stock, String image, String description) { }
+
+    /**
+     * Counts and bad rows of one import, shared by its parsers
+     */
+    private static class Progress {
+
+        /**
+         * Number of rows added to the inventory
+         */
+        private final LongAdder imported = new LongAdder();
+
+        /**
+         * Number of rows rejected
+         */
+        private final LongAdder bad = new LongAdder();
+
+        /**
+         * First rejected rows
+         */
+        private final List<BadRow> badRows = new ArrayList<>();
+
+        /**
+         * Sequence of the next chunk to be added to the inventory
+         */
+        private long nextChunk;
+
+        /**
+         * Method to wait until every chunk before the given one has been added
+         * @param sequence long sequence of the chunk
+         */
+        private synchronized void awaitTurn(long sequence) throws InterruptedException {
+            while (nextChunk != sequence) wait();
+        }
+
+        /**
+         * Method to let the next chunk be added
+         */
+        private synchronized void endTurn() {
+            nextChunk++;
+            notifyAll();
+        }
+
+        /**
+         * Method to record a rejected row
+         * @param line long line number the row starts on
+         * @param reason String reason it was rejected
+         * @param text String text of the row
+         */
+        private void reject(long line, String reason, String text) {
+            bad.increment();
+            synchronized (badRows) {
+                if (badRows.size() < MAX_BAD_ROWS) {
+                    String shortened = text.length() > MAX_BAD_ROW_LENGTH ? text.substring(0, MAX_BAD_ROW_LENGTH) + "..." : text;
+                    badRows.add(new BadRow(line, reason, shortened));
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor for an importer with a parser thread per processor
+     * @param inventory StockContainer to import into
+     */
+    public CatalogImporter(StockContainer inventory) { this(inventory, Runtime.getRuntime().availableProcessors()); }
+
+    /**
+     * Constructor for an importer
+     * @param inventory StockContainer to import into
+     * @param parsers int number of parser threads
+     */
+    public CatalogImporter(StockContainer inventory, int parsers) {
+        if (parsers < 1) throw new IllegalArgumentException("Number of parsers must be 1 or more.");
+        this.inventory = inventory;
+        this.parsers = parsers;
+    }
+
+    /**
+     * Method to import a catalog file, in the format given by its extension
+     * @param path Path of the file
+     * @return Report of the import
+     */
+    public Report importFile(Path path) { return importFile(path, Format.of(path)); }
+
+    /**
+     * Method to import a catalog file
+     * @param path Path of the file
+     * @param format Format of the file
+     * @return Report of the import
+     */
+    public Report importFile(Path path, Format format) {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return importRows(reader, format);
+        } catch (IOException err) {
+            throw new UncheckedIOException(err);
+        }
+    }
+
+    /**
+     * Method to import the rows read from a reader
+     * @param reader BufferedReader of the catalog, read to its end
+     * @param format Format of the catalog
+     * @return Report of the import
+     * @throws IOException if the reader fails; rows imported before then stay in the inventory
+     */
+    public Report importRows(BufferedReader reader, Format format) throws IOException {
+
+        long start = System.nanoTime();
+        long[] lineNumber = {0};
+
+        Map<String, Integer> columns = null;
+        if (format == Format.CSV) {
+            String header = readRow(reader, format, lineNumber);
+            if (header == null) throw new IllegalArgumentException("The catalog has no header row.");
+            columns = parseHeader(header);
+        }
+        Map<String, Integer> csvColumns = columns;
+
+        // two chunks per parser keeps every parser busy while bounding how far reading gets ahead
+        BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(parsers * 2);
+        Progress progress = new Progress();
+        ExecutorService threads = Executors.newFixedThreadPool(parsers, runnable -> {
+            Thread thread = new Thread(runnable, "catalog-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < parsers; i++) results.add(threads.submit(() -> importChunks(chunks, format, csvColumns, progress)));
+        threads.shutdown();
+
+        long rows = 0;
+        boolean finished = false;
+        try {
+            String[] rowTexts = new String[CHUNK_ROWS];
+            long[] lines = new long[CHUNK_ROWS];
+            int numRows = 0;
+            long sequence = 0;
+            String row;
+            while (true) {
+                long line = lineNumber[0] + 1;
+                if ((row = readRow(reader, format, lineNumber)) == null) break;
+                if (row.isBlank()) continue;
+
+                rowTexts[numRows] = row;
+                lines[numRows++] = line;
+                rows++;
+                if (numRows == CHUNK_ROWS) {
+                    chunks.put(new Chunk(sequence++, rowTexts, lines, numRows));
+                    rowTexts = new String[CHUNK_ROWS];
+                    lines = new long[CHUNK_ROWS];
+                    numRows = 0;
+                }
+            }
+            if (numRows > 0) chunks.put(new Chunk(sequence, rowTexts, lines, numRows));
+
+            // parsers stop at the end marker, after every chunk queued ahead of it
+            for (int i = 0; i < parsers; i++) chunks.put(END);
+            for (Future<?> result : results) result.get();
+            finished = true;
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while importing the catalog.", err);
+        } catch (ExecutionException err) {
+            throw new IllegalStateException("A catalog parser failed unexpectedly.", err.getCause());
+        } finally {
+            // parsers waiting for rows that will never come are interrupted
+            if (!finished) threads.shutdownNow();
+        }
+
+        List<BadRow> badRows;
+        synchronized (progress.badRows) {
+            badRows = List.copyOf(progress.badRows);
+        }
+        return new Report(rows, progress.imported.sum(), progress.bad.sum(), badRows, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Method run by each parser thread, parsing chunks and adding their valid rows until the end is reached
+     * @param chunks BlockingQueue of Chunk's to parse
+     * @param format Format of the rows
+     * @param columns Map of CSV column names to positions, null for JSON lines
+     * @param progress Progress of the import
+     */
+    private void importChunks(BlockingQueue<Chunk> chunks, Format format, Map<String, Integer> columns, Progress progress) {
+
+        while (true) {
+            Chunk chunk;
+            try {
+                chunk = chunks.take();
+            } catch (InterruptedException err) {
+                return;
+            }
+            if (chunk == END) return;
+
+            List<Row> rows = new ArrayList<>(chunk.numRows());
+            for (int i = 0; i < chunk.numRows(); i++) {
+                String text = chunk.rows()[i];
+                try {
+                    rows.add(parseRow(chunk.lines()[i], text, format == Format.CSV ? csvFields(text, columns) : jsonFields(text)));
+                } catch (RuntimeException err) {
+                    // any failure rejects only its row, so this parser still takes its turn and later chunks are not left waiting
+                    progress.reject(chunk.lines()[i], reasonOf(err), text);
+                }
+            }
+
+            try {
+                progress.awaitTurn(chunk.sequence());
+            } catch (InterruptedException err) {
+                return;
+            }
+            try {
+                addRows(rows, progress);
+            } finally {
+                progress.endTurn();
+            }
+        }
+    }
+
+    /**
+     * Method to add a chunk's parsed rows to the inventory in one batch
+     * @param rows List of Row's in file order
+     * @param progress Progress of the import
+     */
+    private void addRows(List<Row> rows, Progress progress) {
+
+        Map<Product, Integer> batch = new HashMap<>(rows.size() * 2);
+        Map<UUID, Product> newProducts = new HashMap<>();
+        List<Row> accepted = new ArrayList<>(rows.size());
+
+        for (Row row : rows) {
+            try {
+                Product product = row.id() != null ? inventory.getProduct(row.id()) : null;
+                if (product == null && row.id() != null) product = newProducts.get(row.id());
+                if (product == null) {
+                    if (row.name() == null) throw new IllegalArgumentException("A new product must have a name.");
+                    if (Double.isNaN(row.price())) throw new IllegalArgumentException("A new product must have a price.");
+                    product = new Product(row.id() != null ? row.id() : UUID.randomUUID(), row.name(), row.price(), row.image(), row.description());
+                    if (row.id() != null) newProducts.put(row.id(), product);
+                }
+                batch.merge(product, row.stock(), Math::addExact);
+                accepted.add(row);
+            } catch (RuntimeException err) {
+                progress.reject(row.line(), reasonOf(err), row.text());
+            }
+        }
+
+        try {
+            inventory.addProductQuantities(batch);
+            progress.imported.add(accepted.size());
+        } catch (RuntimeException err) {
+            // every row was validated, so the batch is reported rather than ending the import
+            for (Row row : accepted) progress.reject(row.line(), "Could not add to inventory: " + reasonOf(err), row.text());
+        }
+    }
+
+    /**
+     * Method to describe why a row was rejected
+     * @param err RuntimeException thrown for the row
+     * @return String message of the exception, or its type if it has none
+     */
+    private static String reasonOf(RuntimeException err) {
+        return err.getMessage() != null ? err.getMessage() : err.getClass().getSimpleName();
+    }
+
+    /**
+     * Method to read the next row; a CSV row continues onto the next line while a quoted field is
+     * open, up to MAX_ROW_LENGTH characters
+     * @param reader BufferedReader of the catalog
+     * @param format Format of the catalog
+     * @param lineNumber single element array of the number of lines read so far, advanced past the row
+     * @return String row, null at the end of the catalog
+     */
+    private static String readRow(BufferedReader reader, Format format, long[] lineNumber) throws IOException {
+
+        String line = reader.readLine();
+        if (line == null) return null;
+        lineNumber[0]++;
+        if (format != Format.CSV || countQuotes(line) % 2 == 0) return line;
+
+        StringBuilder row = new StringBuilder(line);
+        int quotes = countQuotes(line);
+        while (quotes % 2 != 0 && row.length() < MAX_ROW_LENGTH && (line = reader.readLine()) != null) {
+            lineNumber[0]++;
+            row.append('\n').append(line);
+            quotes += countQuotes(line);
+        }
+        return row.toString();
+    }
+
+    /**
+     * Method to count the quote characters in a line
+     * @param line String line of a CSV file
+     * @return int number of quotes
+     */
+    private static int countQuotes(String line) {
+        int quotes = 0;
+        for (int i = 0; i < line.length(); i++) if (line.charAt(i) == '"') quotes++;
+        return quotes;
+    }
+
+    /**
+     * Method to read the column names of a CSV header row; names are compared ignoring case, and a
+     * name given twice is rejected, as only one of its columns could be read
+     * @param header String header row
+     * @return Map of lower case column names to positions
+     */
+    private static Map<String, Integer> parseHeader(String header) {
+
+        List<String> names = parseCsv(header);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).strip().toLowerCase(Locale.ROOT);
+            if (columns.put(name, i) != null)
+                throw new IllegalArgumentException("The catalog has more than one column named \"" + name + "\".");
+        }
+
+        if (!columns.containsKey("stock")) throw new IllegalArgumentException("The catalog has no stock column.");
+        if (!columns.containsKey("id") && !(columns.containsKey("name") && columns.containsKey("price")))
+            throw new IllegalArgumentException("The catalog needs an id column or both name and price columns.");
+        return columns;
+    }
+
+    /**
+     * Method to split a CSV row into its fields
+     * @param row String row
+     * @return List of field values, unquoted
+     */
+    private static List<String> parseCsv(String row) {
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < row.length(); i++) {
+            char c = row.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < row.length() && row.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("Unterminated quoted field.");
+
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Method to name the fields of a CSV row by their columns
+     * @param row String row
+     * @param columns Map of column names to positions
+     * @return Map of column names to values
+     */
+    private static Map<String, String> csvFields(String row, Map<String, Integer> columns) {
+
+        List<String> values = parseCsv(row);
+        if (values.size() != columns.size())
+            throw new IllegalArgumentException("Expected " + columns.size() + " fields, found " + values.size() + ".");
+
+        Map<String, String> fields = new HashMap<>();
+        for (Map.Entry<String, Integer> column : columns.entrySet()) fields.put(column.getKey(), values.get(column.getValue()));
+        return fields;
+    }
+
+    /**
+     * Method to read the fields of a flat JSON object; numbers and booleans are kept as their text and
+     * null fields are left out
+     * @param row String JSON object
+     * @return Map of keys to values
+     */
+    private static Map<String, String> jsonFields(String row) {
+
+        Map<String, String> fields = new HashMap<>();
+        int[] position = {skipWhitespace(row, 0)};
+
+        expect(row, position, '{');
+        if (peek(row, position) == '}') {
+            position[0]++;
+        } else {
+            while (true) {
+                String key = readJsonString(row, position);
+                expect(row, position, ':');
+                String value = readJsonValue(row, position);
+                if (value != null) fields.put(key.toLowerCase(Locale.ROOT), value);
+                if (peek(row, position) == ',') {
+                    position[0]++;
+                } else {
+                    expect(row, position, '}');
+                    break;
+                }
+            }
+        }
+        if (skipWhitespace(row, position[0]) != row.length()) throw new IllegalArgumentException("Unexpected text after the JSON object.");
+        return fields;
+    }
+
+    /**
+     * Method to read a JSON string, number, boolean or null
+     * @param row String JSON text
+     * @param position single element array of the read position, advanced past the value
+     * @return String value, null for a JSON null
+     */
+    private static String readJsonValue(String row, int[] position) {
+
+        char c = peek(row, position);
+        if (c == '"') return readJsonString(row, position);
+        if (c == '{' || c == '[') throw new IllegalArgumentException("Nested JSON values are not supported.");
+
+        int start = position[0];
+        while (position[0] < row.length() && ",}".indexOf(row.charAt(position[0])) < 0 && !Character.isWhitespace(row.charAt(position[0])))
+            position[0]++;
+        String token = row.substring(start, position[0]);
+        if (token.isEmpty()) throw new IllegalArgumentException("Missing JSON value at column " + (start + 1) + ".");
+        return token.equals("null") ? null : token;
+    }
+
+    /**
+     * Method to read a JSON string
+     * @param row String JSON text
+     * @param position single element array of the read position, advanced past the string
+     * @return String decoded string
+     */
+    private static String readJsonString(String row, int[] position) {
+
+        expect(row, position, '"');
+        StringBuilder string = new StringBuilder();
+
+        for (int i = position[0]; i < row.length(); i++) {
+            char c = row.charAt(i);
+            if (c == '"') {
+                position[0] = i + 1;
+                return string.toString();
+            } else if (c != '\\') {
+                string.append(c);
+            } else if (++i < row.length()) {
+                switch (row.charAt(i)) {
+                    case '"', '\\', '/' -> string.append(row.charAt(i));
+                    case 'b' -> string.append('\b');
+                    case 'f' -> string.append('\f');
+                    case 'n' -> string.append('\n');
+                    case 'r' -> string.append('\r');
+                    case 't' -> string.append('\t');
+                    case 'u' -> {
+                        if (i + 4 >= row.length()) throw new IllegalArgumentException("Invalid JSON escape.");
+                        try {
+                            string.append((char) Integer.parseInt(row.substring(i + 1, i + 5), 16));
+                        } catch (NumberFormatException err) {
+                            throw new IllegalArgumentException("Invalid JSON escape.");
+                        }
+                        i += 4;
+                    }
+                    default -> throw new IllegalArgumentException("Invalid JSON escape.");
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unterminated JSON string.");
+    }
+
+    /**
+     * Method to skip whitespace and check the next character of JSON text
+     * @param row String JSON text
+     * @param position single element array of the read position, advanced past the character
+     * @param expected char character that must come next
+     */
+    private static void expect(String row, int[] position, char expected) {
+        if (peek(row, position) != expected)
+            throw new IllegalArgumentException("Expected '" + expected + "' at column " + (position[0] + 1) + ".");
+        position[0]++;
+    }
+
+    /**
+     * Method to skip whitespace and look at the next character of JSON text
+     * @param row String JSON text
+     * @param position single element array of the read position, advanced past the whitespace
+     * @return char next character, 0 at the end of the text
+     */
+    private static char peek(String row, int[] position) {
+        position[0] = skipWhitespace(row, position[0]);
+        return position[0] < row.length() ? row.charAt(position[0]) : 0;
+    }
+
+    /**
+     * Method to find the end of a run of whitespace
+     * @param row String text
+     * @param position int position to start from
+     * @return int position of the next character that is not whitespace
+     */
+    private static int skipWhitespace(String row, int position) {
+        while (position < row.length() && Character.isWhitespace(row.charAt(position))) position++;
+        return position;
+    }
+
+    /**
+     * Method to parse and validate a row's fields
+     * @param line long line number the row starts on
+     * @param text String text of the row
+     * @param fields Map of the row's fields
+     * @return Row parsed
+     */
+    private static Row parseRow(long line, String text, Map<String, String> fields) {
+
+        String id = blankToNull(fields.get("id"));
+        UUID productID = null;
+        if (id != null) {
+            try {
+                productID = UUID.fromString(id.strip());
+            } catch (IllegalArgumentException err) {
+                throw new IllegalArgumentException("Invalid product id: " + id.strip());
+            }
+        }
+
+        String stockText = blankToNull(fields.get("stock"));
+        if (stockText == null) throw new IllegalArgumentException("A row must have a stock.");
+        int stock;
+        try {
+            stock = Integer.parseInt(stockText.strip());
+        } catch (NumberFormatException err) {
+            stock = -1;
+        }
+        if (stock < 0) throw new IllegalArgumentException("Stock must be a whole number of 0 or more: " + stockText.strip());
+
+        String priceText = blankToNull(fields.get("price"));
+        double price = Double.NaN;
+        if (priceText != null) {
+            try {
+                price = Double.parseDouble(priceText.strip());
+            } catch (NumberFormatException ignored) { }
+            if (!(price >= 0 && price <= MAX_PRICE))
+                throw new IllegalArgumentException("Price must be a number from 0 to " + (long) MAX_PRICE + ": " + priceText.strip());
+        }
+
+        String name = blankToNull(fields.get("name"));
+        return new Row(line, text, productID, name != null ? name.strip() : null, price, stock,
+                blankToNull(fields.get("image")), blankToNull(fields.get("description")));
+    }
+
+    /**
+     * Method to treat a blank field as missing
+     * @param value String field, may be null
+     * @return String field, null if it was blank
+     */
+    private static String blankToNull(String value) { return value == null || value.isBlank() ? null : value; }
+
+    /**
+     * Imports a catalog file into an in-memory inventory and prints the report
+     * @param args catalog file path, then optionally the number of parser threads
+     */
+    public static void main(String[] args) {
+
+        if (args.length < 1) throw new IllegalArgumentException("Usage: CatalogImporter <catalog.csv|catalog.jsonl> [parsers]");
+
+        Inventory inventory = new Inventory();
+        CatalogImporter importer = args.length > 1 ? new CatalogImporter(inventory, Integer.parseInt(args[1])) : new CatalogImporter(inventory);
+        Report report = importer.importFile(Path.of(args[0]));
+
+        System.out.println(report.summary());
+        for (BadRow badRow : report.badRows().subList(0, Math.min(10, report.badRows().size()))) {
+            System.out.printf("line %d: %s%n  %s%n", badRow.line(), badRow.reason(), badRow.text());
+        }
+        System.out.println(inventory.getNumOfProducts() + " products in inventory");
+    }
+
+}
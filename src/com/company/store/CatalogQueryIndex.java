@@ -0,0 +1,532 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Secondary indexes of an Inventory's products sorted by price, name and stock, answering paged
+ * queries without sorting the catalog. Each index is an order statistic treap whose nodes count the
+ * products, and the products in stock, below them, so the start of any page is found in O(log n)
+ * and the page is read in order from there. Stock changes are only noted by the listener, keeping
+ * the inventory's hot path free of locks; they are applied to the indexes by the queries that follow.
+ * One query at a time applies them, at most REFRESH_CHUNK per query, so a burst of changes is spread
+ * over several queries instead of held against one, and the other queries read meanwhile
+ * @author Julian Nicolai 101154233
+ */
+public class CatalogQueryIndex implements InventoryListener {
+
+    /**
+     * Largest number of queued changes a query applies before reading the indexes
+     */
+    private static final int REFRESH_CHUNK = 1024;
+
+    /**
+     * Orders the products can be listed in
+     */
+    public enum SortKey {
+        /** Price, then name */
+        PRICE,
+        /** Name, ignoring case */
+        NAME,
+        /** Units in stock */
+        STOCK
+    }
+
+    /**
+     * Page of query results
+     * @param entries List of the page's products and their stock
+     * @param totalMatches int number of products matching the query over all pages
+     */
+    public record Page(List<ProductEntry> entries, int totalMatches) { }
+
+    /**
+     * Inventory whose products are indexed
+     */
+    private final StockContainer inventory;
+
+    /**
+     * Index of each sort key
+     */
+    private final EnumMap<SortKey, Treap> trees;
+
+    /**
+     * Stock each indexed product was last indexed with, by product ID
+     */
+    private final Map<UUID, Integer> indexedStock;
+
+    /**
+     * Products added or changed since the indexes were last brought up to date
+     */
+    private final ConcurrentLinkedQueue<Product> pending;
+
+    /**
+     * IDs of the products in pending, so a product changing many times is only queued once
+     */
+    private final Set<UUID> pendingIDs;
+
+    /**
+     * Whether the indexes have been built; they are built by the first query
+     */
+    private volatile boolean built;
+
+    /**
+     * Lock held by the query applying queued changes, so the others read instead of waiting for it
+     */
+    private final ReentrantLock refreshLock;
+
+    /**
+     * Lock letting queries read together while queued changes are applied one chunk at a time
+     */
+    private final ReadWriteLock lock;
+
+    /**
+     * Node of a treap, holding one product with its sort key as it was when indexed
+     */
+    private static class Node {
+
+        /**
+         * Product and its live stock
+         */
+        private final ProductEntry entry;
+
+        /**
+         * Numeric sort key: price in cents or stock, 0 when sorting by name
+         */
+        private final long number;
+
+        /**
+         * Text sort key: lower case name, null when sorting by stock
+         */
+        private final String text;
+
+        /**
+         * Whether the product had stock when indexed
+         */
+        private final boolean inStock;
+
+        /**
+         * Random heap priority keeping the treap balanced
+         */
+        private final int priority;
+
+        /**
+         * Subtree of smaller keys
+         */
+        private Node left;
+
+        /**
+         * Subtree of larger keys
+         */
+        private Node right;
+
+        /**
+         * Number of products in the subtree
+         */
+        private int size;
+
+        /**
+         * Number of products in stock in the subtree
+         */
+        private int inStockCount;
+
+        /**
+         * Constructor for an unlinked Node
+         * @param entry ProductEntry of the product
+         * @param number long numeric sort key
+         * @param text String text sort key, may be null
+         * @param inStock boolean whether the product has stock
+         */
+        private Node(ProductEntry entry, long number, String text, boolean inStock) {
+            this.entry = entry;
+            this.number = number;
+            this.text = text;
+            this.inStock = inStock;
+            this.priority = ThreadLocalRandom.current().nextInt();
+            this.size = 1;
+            this.inStockCount = inStock ? 1 : 0;
+        }
+    }
+
+    /**
+     * Order statistic treap of products under one sort key
+     */
+    private static class Treap {
+
+        /**
+         * Sort key of the treap
+         */
+        private final SortKey sortKey;
+
+        /**
+         * Nodes of the treap by product ID
+         */
+        private final Map<UUID, Node> nodes;
+
+        /**
+         * Root of the treap, null if empty
+         */
+        private Node root;
+
+        /**
+         * Constructor for an empty Treap
+         * @param sortKey SortKey of the treap
+         */
+        private Treap(SortKey sortKey) {
+            this.sortKey = sortKey;
+            this.nodes = new HashMap<>();
+        }
+
+        /**
+         * Method to add a product, replacing it if already present
+         * @param entry ProductEntry of the product
+         * @param stock int stock to index the product with
+         */
+        private void put(ProductEntry entry, int stock) {
+
+            remove(entry.getProduct().getID());
+
+            Product product = entry.getProduct();
+            Node node = switch (sortKey) {
+                case PRICE -> new Node(entry, product.getPriceCents(), foldName(product), stock > 0);
+                case NAME -> new Node(entry, 0, foldName(product), stock > 0);
+                case STOCK -> new Node(entry, stock, null, stock > 0);
+            };
+
+            Node[] parts = split(root, node, false);
+            root = merge(merge(parts[0], node), parts[1]);
+            nodes.put(product.getID(), node);
+        }
+
+        /**
+         * Method to remove a product if present
+         * @param id UUID of the product
+         */
+        private void remove(UUID id) {
+
+            Node node = nodes.remove(id);
+            if (node == null) return;
+
+            Node[] below = split(root, node, false);
+            Node[] rest = split(below[1], node, true);
+            root = merge(below[0], rest[1]);
+        }
+
+        /**
+         * Method to count the products whose numeric key is below a value
+         * @param number long value
+         * @param inStockOnly boolean count only products in stock
+         * @return int number of products
+         */
+        private int countBelow(long number, boolean inStockOnly) {
+
+            int count = 0;
+            for (Node node = root; node != null; ) {
+                if (node.number < number) {
+                    count += count(node.left, inStockOnly) + (!inStockOnly || node.inStock ? 1 : 0);
+                    node = node.right;
+                } else {
+                    node = node.left;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Constructor for the indexes of an inventory; register it as a listener of the inventory so
+     * the indexes follow its changes
+     * @param inventory StockContainer to index
+     */
+    public CatalogQueryIndex(StockContainer inventory) {
+        this.inventory = inventory;
+        this.trees = new EnumMap<>(SortKey.class);
+        for (SortKey sortKey : SortKey.values()) trees.put(sortKey, new Treap(sortKey));
+        this.indexedStock = new HashMap<>();
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.pendingIDs = ConcurrentHashMap.newKeySet();
+        this.refreshLock = new ReentrantLock();
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    @Override
+    public void productAdded(Product product) { markPending(product); }
+
+    @Override
+    public void stockChanged(Product product) { markPending(product); }
+
+    /**
+     * Method to note a product to be brought up to date by the next query
+     * @param product Product added or changed
+     */
+    private void markPending(Product product) { if (pendingIDs.add(product.getID())) pending.add(product); }
+
+    /**
+     * Method to retrieve a page of products. Filtering on price while sorting by price, or only on
+     * stock, costs O(log n + page size); filtering on price while sorting by name or stock reads the
+     * sort order from the start until the page is filled. Changes still queued after a burst are
+     * left for the following queries
+     * @param sortKey SortKey to order the products by
+     * @param descending boolean true for largest first
+     * @param minPriceCents long lowest price included, in cents
+     * @param maxPriceCents long highest price included, in cents
+     * @param inStockOnly boolean true to leave out products without stock
+     * @param page int number of the page, from 0
+     * @param pageSize int number of products per page
+     * @return Page of products and the total number of matches
+     */
+    public Page query(SortKey sortKey, boolean descending, long minPriceCents, long maxPriceCents,
+                      boolean inStockOnly, int page, int pageSize) {
+
+        if (page < 0) throw new IllegalArgumentException("Page number must be 0 or more.");
+        else if (pageSize < 1) throw new IllegalArgumentException("Page size must be 1 or more.");
+
+        refresh();
+
+        lock.readLock().lock();
+        try {
+            Treap prices = trees.get(SortKey.PRICE);
+            int all = count(prices.root, inStockOnly);
+            int below = prices.countBelow(minPriceCents, inStockOnly);
+            int upTo = maxPriceCents == Long.MAX_VALUE ? all : prices.countBelow(maxPriceCents + 1, inStockOnly);
+            int total = Math.max(0, upTo - below);
+
+            long start = (long) page * pageSize;
+            List<ProductEntry> entries = new ArrayList<>();
+            if (start >= total) return new Page(entries, total);
+            int take = (int) Math.min(pageSize, total - start);
+
+            if (sortKey == SortKey.PRICE) {
+                // the price range is a contiguous run of the price order
+                int skip = (int) start + (descending ? all - upTo : below);
+                collect(prices.root, skip, inStockOnly, descending, take, entries);
+            } else if (below == 0 && upTo == all) {
+                collect(trees.get(sortKey).root, (int) start, inStockOnly, descending, take, entries);
+            } else {
+                collectInPriceRange(trees.get(sortKey).root, start, inStockOnly, descending, minPriceCents, maxPriceCents, take, entries);
+            }
+            return new Page(entries, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Method to bring the indexes closer to the inventory, building them on first use and then
+     * applying up to REFRESH_CHUNK queued changes. A query that finds another applying changes
+     * reads the indexes as they are, unless they have not been built yet
+     */
+    private void refresh() {
+
+        if (built) {
+            if (pending.isEmpty() || !refreshLock.tryLock()) return;
+        } else {
+            refreshLock.lock();
+        }
+        try {
+            lock.writeLock().lock();
+            try {
+                if (!built) {
+                    for (ProductEntry productEntry : inventory.getProductStockInfo()) index(productEntry);
+                    built = true;
+                }
+
+                for (int i = 0; i < REFRESH_CHUNK; i++) {
+                    Product product = pending.poll();
+                    if (product == null) break;
+                    // unmarked before reading the stock, so a change made after the read is queued again
+                    pendingIDs.remove(product.getID());
+                    ProductEntry productEntry = inventory.getProductEntry(product);
+                    if (productEntry != null) index(productEntry);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Method to index a product with its current stock, moving it only in the indexes it changed in
+     * @param productEntry ProductEntry of the product
+     */
+    private void index(ProductEntry productEntry) {
+
+        UUID id = productEntry.getProduct().getID();
+        int stock = productEntry.getStock();
+        Integer previous = indexedStock.put(id, stock);
+
+        if (previous == null || (previous > 0) != (stock > 0)) {
+            // new, or moved in or out of stock, which changes the in-stock counts of every index
+            for (Treap treap : trees.values()) treap.put(productEntry, stock);
+        } else if (previous != stock) {
+            trees.get(SortKey.STOCK).put(productEntry, stock);
+        }
+    }
+
+    /**
+     * Method to fold a product's name for sorting
+     * @param product Product to sort
+     * @return String lower case name, empty if the product has none
+     */
+    private static String foldName(Product product) {
+        String name = product.getName();
+        return name != null ? name.toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * Method to compare the sort keys of two nodes, breaking ties by product ID
+     * @param a Node first
+     * @param b Node second
+     * @return int negative, zero or positive as a sorts before, with or after b
+     */
+    private static int compare(Node a, Node b) {
+        int result = Long.compare(a.number, b.number);
+        if (result == 0 && a.text != null) result = a.text.compareTo(b.text);
+        if (result == 0) result = a.entry.getProduct().getID().compareTo(b.entry.getProduct().getID());
+        return result;
+    }
+
+    /**
+     * Method to count the products of a subtree
+     * @param node Node root of the subtree, may be null
+     * @param inStockOnly boolean count only products in stock
+     * @return int number of products
+     */
+    private static int count(Node node, boolean inStockOnly) {
+        if (node == null) return 0;
+        return inStockOnly ? node.inStockCount : node.size;
+    }
+
+    /**
+     * Method to recount a node's subtree after its children change
+     * @param node Node to recount
+     */
+    private static void update(Node node) {
+        node.size = 1 + count(node.left, false) + count(node.right, false);
+        node.inStockCount = (node.inStock ? 1 : 0) + count(node.left, true) + count(node.right, true);
+    }
+
+    /**
+     * Method to split a subtree into the nodes before a key and the rest
+     * @param node Node root of the subtree, may be null
+     * @param key Node whose sort key splits the subtree
+     * @param inclusive boolean true to put a node equal to the key in the first part
+     * @return Node[] roots of the two parts
+     */
+    private static Node[] split(Node node, Node key, boolean inclusive) {
+
+        if (node == null) return new Node[2];
+
+        int comparison = compare(node, key);
+        if (comparison < 0 || (inclusive && comparison == 0)) {
+            Node[] parts = split(node.right, key, inclusive);
+            node.right = parts[0];
+            update(node);
+            parts[0] = node;
+            return parts;
+        } else {
+            Node[] parts = split(node.left, key, inclusive);
+            node.left = parts[1];
+            update(node);
+            parts[1] = node;
+            return parts;
+        }
+    }
+
+    /**
+     * Method to join two subtrees, every key of the first sorting before every key of the second
+     * @param first Node root of the first subtree, may be null
+     * @param second Node root of the second subtree, may be null
+     * @return Node root of the joined tree
+     */
+    private static Node merge(Node first, Node second) {
+
+        if (first == null) return second;
+        if (second == null) return first;
+
+        if (first.priority > second.priority) {
+            first.right = merge(first.right, second);
+            update(first);
+            return first;
+        } else {
+            second.left = merge(first, second.left);
+            update(second);
+            return second;
+        }
+    }
+
+    /**
+     * Method to collect products in order after skipping some, using the subtree counts to pass
+     * over skipped subtrees without visiting them
+     * @param node Node root of the subtree, may be null
+     * @param skip int number of products to pass over first
+     * @param inStockOnly boolean true to leave out products without stock
+     * @param descending boolean true for largest first
+     * @param limit int number of products wanted in the results
+     * @param results List to add the products to
+     */
+    private static void collect(Node node, int skip, boolean inStockOnly, boolean descending, int limit, List<ProductEntry> results) {
+
+        if (node == null || results.size() >= limit || count(node, inStockOnly) <= skip) return;
+
+        Node first = descending ? node.right : node.left;
+        Node second = descending ? node.left : node.right;
+
+        int firstCount = count(first, inStockOnly);
+        if (skip < firstCount) collect(first, skip, inStockOnly, descending, limit, results);
+        skip = Math.max(0, skip - firstCount);
+        if (results.size() >= limit) return;
+
+        if (!inStockOnly || node.inStock) {
+            if (skip == 0) results.add(node.entry);
+            else skip--;
+        }
+        collect(second, skip, inStockOnly, descending, limit, results);
+    }
+
+    /**
+     * Method to collect products in a price range in order, reading the order from the start
+     * @param root Node root of the treap
+     * @param skip long number of matching products to pass over first
+     * @param inStockOnly boolean true to leave out products without stock
+     * @param descending boolean true for largest first
+     * @param minPriceCents long lowest price included, in cents
+     * @param maxPriceCents long highest price included, in cents
+     * @param limit int number of products wanted in the results
+     * @param results List to add the products to
+     */
+    private static void collectInPriceRange(Node root, long skip, boolean inStockOnly, boolean descending,
+                                            long minPriceCents, long maxPriceCents, int limit, List<ProductEntry> results) {
+
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        Node node = root;
+        while ((node != null || !stack.isEmpty()) && results.size() < limit) {
+            if (node != null) {
+                // subtrees with nothing in stock cannot match
+                if (count(node, inStockOnly) == 0) {
+                    node = null;
+                } else {
+                    stack.push(node);
+                    node = descending ? node.right : node.left;
+                }
+                continue;
+            }
+            node = stack.pop();
+            long price = node.entry.getProduct().getPriceCents();
+            if ((!inStockOnly || node.inStock) && price >= minPriceCents && price <= maxPriceCents) {
+                if (skip == 0) results.add(node.entry);
+                else skip--;
+            }
+            node = descending ? node.left : node.right;
+        }
+    }
+
+}
@@ -0,0 +1,300 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.util.*;
+
+/**
+ * Product stock container that stores its columns in parallel arrays indexed by a dense product
+ * number: the ID, price and stock in primitive arrays, and the name, image and description. An open
+ * addressing table maps each product ID to its number. No Product, UUID or entry object is kept per
+ * product; the Product's added are only read, and getProductStockInfo creates new Product views
+ * with the same ID when asked. Scans over the whole inventory (totals, reports, audits) read
+ * contiguous arrays. All methods are synchronized
+ * @author Julian Nicolai 101154233
+ */
+public class ColumnarInventory implements ProductStockContainer {
+
+    /**
+     * Initial capacity of the columns
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Most significant bits of each product ID by dense index
+     */
+    private long[] idHighBits;
+
+    /**
+     * Least significant bits of each product ID by dense index
+     */
+    private long[] idLowBits;
+
+    /**
+     * Name of each product by dense index
+     */
+    private String[] names;
+
+    /**
+     * Image location of each product by dense index
+     */
+    private String[] images;
+
+    /**
+     * Description of each product by dense index
+     */
+    private String[] descriptions;
+
+    /**
+     * Price of each product by dense index, as given to its Product
+     */
+    private double[] prices;
+
+    /**
+     * Stock of each product by dense index
+     */
+    private int[] stock;
+
+    /**
+     * Price of each product in cents by dense index
+     */
+    private long[] priceCents;
+
+    /**
+     * Number of products stored
+     */
+    private int size;
+
+    /**
+     * Open addressing table of the dense index plus one of the product in each slot, 0 if the slot
+     * is empty; the ID of the product in a slot is read from the ID columns
+     */
+    private int[] indexSlots;
+
+    /**
+     * Constructor for an empty ColumnarInventory
+     */
+    public ColumnarInventory() {
+        this.idHighBits = new long[INITIAL_CAPACITY];
+        this.idLowBits = new long[INITIAL_CAPACITY];
+        this.names = new String[INITIAL_CAPACITY];
+        this.images = new String[INITIAL_CAPACITY];
+        this.descriptions = new String[INITIAL_CAPACITY];
+        this.prices = new double[INITIAL_CAPACITY];
+        this.stock = new int[INITIAL_CAPACITY];
+        this.priceCents = new long[INITIAL_CAPACITY];
+        this.indexSlots = new int[INITIAL_CAPACITY * 2];
+    }
+
+    /**
+     * Constructor copying the products and stock of another container
+     * @param container ProductStockContainer to copy
+     */
+    public ColumnarInventory(ProductStockContainer container) {
+        this();
+        for (ProductEntry productEntry : container.getProductStockInfo()) {
+            addProductQuantity(productEntry.getProduct(), productEntry.getStock());
+        }
+    }
+
+    /**
+     * Method to find the dense index of a product
+     * @param id UUID of the product
+     * @return int dense index, -1 if the product does not exist
+     */
+    private int indexOf(UUID id) {
+
+        long high = id.getMostSignificantBits();
+        long low = id.getLeastSignificantBits();
+        int mask = indexSlots.length - 1;
+
+        for (int slot = hash(high, low) & mask; indexSlots[slot] != 0; slot = (slot + 1) & mask) {
+            int index = indexSlots[slot] - 1;
+            if (idHighBits[index] == high && idLowBits[index] == low) return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Method to place a product's dense index in the ID table, once its ID columns are filled
+     * @param index int dense index of the product
+     */
+    private void putIndex(int index) {
+
+        int mask = indexSlots.length - 1;
+        int slot = hash(idHighBits[index], idLowBits[index]) & mask;
+        while (indexSlots[slot] != 0) slot = (slot + 1) & mask;
+
+        indexSlots[slot] = index + 1;
+    }
+
+    /**
+     * Method to spread the bits of an ID into a table position
+     * @param high long most significant bits of the ID
+     * @param low long least significant bits of the ID
+     * @return int hash
+     */
+    private static int hash(long high, long low) {
+        long bits = (high ^ low) * 0x9E3779B97F4A7C15L;
+        return (int) (bits ^ (bits >>> 32));
+    }
+
+    /**
+     * Method to double the capacity of the columns and the ID table
+     */
+    private void grow() {
+
+        int capacity = stock.length * 2;
+        idHighBits = Arrays.copyOf(idHighBits, capacity);
+        idLowBits = Arrays.copyOf(idLowBits, capacity);
+        names = Arrays.copyOf(names, capacity);
+        images = Arrays.copyOf(images, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        stock = Arrays.copyOf(stock, capacity);
+        priceCents = Arrays.copyOf(priceCents, capacity);
+
+        // the table is kept at twice the capacity so it is never more than half full
+        indexSlots = new int[capacity * 2];
+        for (int i = 0; i < size; i++) putIndex(i);
+    }
+
+    /**
+     * Method for retrieving the current stock of a Product
+     * @param product Product to retrieve
+     * @return amount of stock
+     */
+    @Override
+    public synchronized int getProductQuantity(Product product) {
+
+        int index = indexOf(product.getID());
+
+        if (index < 0) throw new ProductNotFoundException("The product requested does not exist.");
+
+        return stock[index];
+    }
+
+    /**
+     * Method to add more stock to existing product or add new product
+     * @param product Product to add stock to
+     * @param numStock amount of stock to add
+     */
+    @Override
+    public synchronized void addProductQuantity(Product product, int numStock) {
+
+        if (numStock < 0) throw new IllegalArgumentException("Number of units must be 0 or more.");
+
+        int index = indexOf(product.getID());
+
+        if (index >= 0) {
+            stock[index] += numStock;
+        } else {
+            // only the product's fields are kept, so the Product itself can be collected
+            if (size == stock.length) grow();
+            idHighBits[size] = product.getID().getMostSignificantBits();
+            idLowBits[size] = product.getID().getLeastSignificantBits();
+            names[size] = product.getName();
+            images[size] = product.getImage();
+            descriptions[size] = product.getDescription();
+            prices[size] = product.getPrice();
+            stock[size] = numStock;
+            priceCents[size] = product.getPriceCents();
+            putIndex(size);
+            size++;
+        }
+    }
+
+    /**
+     * Method to remove stock from existing product
+     * @param product Product to remove stock from
+     * @param numStock amount of stock to remove
+     */
+    @Override
+    public synchronized void removeProductQuantity(Product product, int numStock) {
+
+        int index = indexOf(product.getID());
+
+        if (numStock < 1) {
+            throw new IllegalArgumentException("Number of units must be 1 or more.");
+        } else if (index < 0) {
+            throw new ProductNotFoundException("The product requested does not exist.");
+        } else if (stock[index] < numStock) {
+            throw new InsufficientStockException("Number of units specified exceeds available stock.");
+        }
+
+        stock[index] -= numStock;
+    }
+
+    /**
+     * Method to retrieve the number of products in the container
+     * @return int number of products
+     */
+    @Override
+    public synchronized int getNumOfProducts() { return size; }
+
+    /**
+     * Method to check whether a product exists in the container
+     * @param product Product to check
+     * @return boolean true if the product has an entry
+     */
+    @Override
+    public synchronized boolean containsProduct(Product product) { return indexOf(product.getID()) >= 0; }
+
+    /**
+     * Method to retrieve all product info in the container. The columns hold no Product or entry
+     * objects, so this builds a new list of ProductEntry's holding new Product views, with the IDs
+     * and fields of the products added; changing them does not change the container
+     * @return List of all products and their stock in insertion order
+     */
+    @Override
+    public synchronized List<ProductEntry> getProductStockInfo() {
+
+        List<ProductEntry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) entries.add(new ProductEntry(getProduct(i), stock[i]));
+        return entries;
+    }
+
+    /**
+     * Method to create a Product view of a product from its columns
+     * @param index int dense index of the product
+     * @return Product with the ID and fields of the product added
+     */
+    private Product getProduct(int index) {
+        return new Product(new UUID(idHighBits[index], idLowBits[index]), names[index], prices[index], images[index],
+                descriptions[index]);
+    }
+
+    /**
+     * Method to sum the stock of every product
+     * @return long total units in stock
+     */
+    public synchronized long getTotalStock() {
+
+        long total = 0;
+        for (int i = 0; i < size; i++) total += stock[i];
+        return total;
+    }
+
+    /**
+     * Method to sum the value of all stock (price times units) of every product
+     * @return long total value in cents
+     */
+    public synchronized long getTotalValueCents() {
+
+        long total = 0;
+        for (int i = 0; i < size; i++) total += priceCents[i] * stock[i];
+        return total;
+    }
+
+    /**
+     * Method to count the products that have no stock left
+     * @return int number of products out of stock
+     */
+    public synchronized int getNumOutOfStock() {
+
+        int count = 0;
+        for (int i = 0; i < size; i++) if (stock[i] == 0) count++;
+        return count;
+    }
+
+}
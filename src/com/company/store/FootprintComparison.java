@@ -0,0 +1,85 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.util.*;
+
+/**
+ * Comparison of the memory an Inventory and a ColumnarInventory take per SKU. Each container is
+ * filled with its own products, created as they are added and referenced by nothing else, so all
+ * each SKU costs is counted: its stock, its Product and UUID if the container keeps them, and the
+ * strings of its name and description. The heap in use is measured after garbage collection before
+ * and after each container is filled, and the bytes per SKU printed. The comparison fails if the
+ * ColumnarInventory does not take less memory than the Inventory, as it keeps the ID, price and
+ * stock in primitive columns instead of a Product, UUID and entry object per SKU
+ * <pre>
+ * java com.company.store.FootprintComparison [products]
+ * </pre>
+ * @author Julian Nicolai 101154233
+ */
+public class FootprintComparison {
+
+    /**
+     * Method to run the comparison
+     * @param args optional number of products (default 200000)
+     */
+    public static void main(String[] args) {
+
+        int numProducts = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        long before = usedHeap();
+        Inventory inventory = new Inventory();
+        fill(inventory, numProducts);
+        long inventoryBytes = usedHeap() - before;
+
+        before = usedHeap();
+        ColumnarInventory columnarInventory = new ColumnarInventory();
+        fill(columnarInventory, numProducts);
+        long columnarBytes = usedHeap() - before;
+
+        // both are still in use here, so neither was collected while the other was measured
+        double inventoryBytesPerSKU = inventoryBytes / (double) inventory.getNumOfProducts();
+        double columnarBytesPerSKU = columnarBytes / (double) columnarInventory.getNumOfProducts();
+
+        System.out.printf("%-18s %10s %14s %14s%n", "container", "SKUs", "bytes", "bytes/SKU");
+        System.out.printf("%-18s %10d %14d %14.1f%n", "Inventory", inventory.getNumOfProducts(), inventoryBytes, inventoryBytesPerSKU);
+        System.out.printf("%-18s %10d %14d %14.1f%n", "ColumnarInventory", columnarInventory.getNumOfProducts(), columnarBytes,
+                columnarBytesPerSKU);
+        System.out.printf("A SKU in a ColumnarInventory takes %.0f%% of the memory it takes in an Inventory.%n",
+                100.0 * columnarBytesPerSKU / inventoryBytesPerSKU);
+
+        if (columnarBytesPerSKU >= inventoryBytesPerSKU)
+            throw new AssertionError("The ColumnarInventory takes no less memory per SKU than the Inventory.");
+    }
+
+    /**
+     * Method to add products to a container, each created as it is added so only the container
+     * keeps it, or whatever of it the container keeps
+     * @param container ProductStockContainer to fill
+     * @param numProducts int number of products to add
+     */
+    private static void fill(ProductStockContainer container, int numProducts) {
+        for (int i = 0; i < numProducts; i++) {
+            container.addProductQuantity(new Product("Product " + i, 1 + i % 100, null, "Footprint product " + i), 1 + i % 100);
+        }
+    }
+
+    /**
+     * Method to measure the heap in use once garbage has been collected
+     * @return long bytes of heap in use
+     */
+    private static long usedHeap() {
+
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // collection is only a request, so it is repeated until the heap stops shrinking
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long nowUsed = runtime.totalMemory() - runtime.freeMemory();
+            if (nowUsed >= used) break;
+            used = nowUsed;
+        }
+        return used;
+    }
+
+}
@@ -0,0 +1,267 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Cache of decoded and scaled product images shared by every StoreView, keyed by image location
+ * and target size. The cache is bounded by the memory of its images and evicts the least recently
+ * used image once full. Images can be loaded on background threads so the event dispatch thread
+ * never waits on disk reads or scaling
+ * @author Julian Nicolai 101154233
+ */
+public class ImageCache {
+
+    /**
+     * Default memory budget of the shared cache in bytes
+     */
+    private static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    /**
+     * Cache used by all StoreView sessions
+     */
+    private static final ImageCache SHARED = new ImageCache(DEFAULT_MAX_BYTES);
+
+    /**
+     * Background threads decoding and scaling images for setIconAsync
+     */
+    private static final ExecutorService LOADER = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors() / 2), runnable -> {
+                Thread thread = new Thread(runnable, "image-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * Cached icons in access order, least recently used first
+     */
+    private final LinkedHashMap<Key, ImageIcon> icons;
+
+    /**
+     * Memory budget of the cache in bytes
+     */
+    private final long maxBytes;
+
+    /**
+     * Memory currently used by cached images in bytes
+     */
+    private long currentBytes;
+
+    /**
+     * Number of lookups served from the cache
+     */
+    private long hits;
+
+    /**
+     * Number of lookups that had to load the image
+     */
+    private long misses;
+
+    /**
+     * Number of images evicted to stay within the budget
+     */
+    private long evictions;
+
+    /**
+     * Cache key of an image location at a target size
+     */
+    private record Key(String image, int width, int height) { }
+
+    /**
+     * Constructor for an empty cache
+     * @param maxBytes long memory budget in bytes
+     */
+    public ImageCache(long maxBytes) {
+        this.icons = new LinkedHashMap<>(16, 0.75f, true);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Method to retrieve the cache shared by all StoreView sessions
+     * @return ImageCache shared cache
+     */
+    public static ImageCache getShared() { return SHARED; }
+
+    /**
+     * Method to retrieve an image scaled to the given size, loading and scaling it on a miss
+     * @param image String image location, relative to root (project) folder
+     * @param width int target width
+     * @param height int target height
+     * @return ImageIcon of the scaled image, empty if the image cannot be read
+     */
+    public ImageIcon getScaledIcon(String image, int width, int height) {
+
+        Key key = new Key(image, width, height);
+
+        synchronized (this) {
+            ImageIcon icon = icons.get(key);
+            if (icon != null) {
+                hits++;
+                return icon;
+            }
+            misses++;
+        }
+
+        // load outside the lock so other lookups are not held up by disk reads and scaling
+        ImageIcon icon = loadScaledIcon(image, width, height);
+
+        synchronized (this) {
+            ImageIcon existing = icons.putIfAbsent(key, icon);
+            if (existing != null) return existing;
+
+            currentBytes += sizeOf(icon);
+            Iterator<ImageIcon> eldest = icons.values().iterator();
+            while (currentBytes > maxBytes && icons.size() > 1) {
+                currentBytes -= sizeOf(eldest.next());
+                eldest.remove();
+                evictions++;
+            }
+            return icon;
+        }
+    }
+
+    /**
+     * Method to set a label's icon to an image scaled to the given size without blocking. A cached
+     * image is set straight away; otherwise a placeholder of the same size is shown and the image
+     * is swapped in on the event dispatch thread once a background thread has loaded it
+     * @param label JLabel to show the image, only touched on the event dispatch thread
+     * @param image String image location, relative to root (project) folder
+     * @param width int target width
+     * @param height int target height
+     */
+    public void setIconAsync(JLabel label, String image, int width, int height) {
+
+        Key key = new Key(image, width, height);
+
+        // remembers which image the label wants, in case it is given another before this one loads
+        label.putClientProperty(ImageCache.class, key);
+
+        synchronized (this) {
+            ImageIcon icon = icons.get(key);
+            if (icon != null) {
+                hits++;
+                label.setIcon(icon);
+                return;
+            }
+        }
+
+        label.setIcon(new PlaceholderIcon(width, height));
+        LOADER.execute(() -> {
+            ImageIcon icon = getScaledIcon(image, width, height);
+            SwingUtilities.invokeLater(() -> {
+                // an image that cannot be read keeps its placeholder so the layout does not change
+                if (icon.getIconWidth() > 0 && key.equals(label.getClientProperty(ImageCache.class))) label.setIcon(icon);
+            });
+        });
+    }
+
+    /**
+     * Light gray box shown while an image loads
+     */
+    private static class PlaceholderIcon implements Icon {
+
+        /**
+         * Colour of the placeholder box
+         */
+        private static final Color COLOR = new Color(235, 235, 235);
+
+        /**
+         * Width of the placeholder
+         */
+        private final int width;
+
+        /**
+         * Height of the placeholder
+         */
+        private final int height;
+
+        /**
+         * Constructor for a PlaceholderIcon
+         * @param width int width
+         * @param height int height
+         */
+        private PlaceholderIcon(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public void paintIcon(Component component, Graphics graphics, int x, int y) {
+            graphics.setColor(COLOR);
+            graphics.fillRect(x, y, width, height);
+        }
+
+        @Override
+        public int getIconWidth() { return width; }
+
+        @Override
+        public int getIconHeight() { return height; }
+    }
+
+    /**
+     * Method to decode an image and scale it to the given size
+     * @param image String image location
+     * @param width int target width
+     * @param height int target height
+     * @return ImageIcon of the scaled image, empty if the image cannot be read
+     */
+    private static ImageIcon loadScaledIcon(String image, int width, int height) {
+
+        BufferedImage source;
+        try {
+            source = image != null ? ImageIO.read(new File(image)) : null;
+        } catch (IOException err) {
+            source = null;
+        }
+        if (source == null) return new ImageIcon();
+
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(source, 0, 0, width, height, null);
+        graphics.dispose();
+
+        return new ImageIcon(scaled);
+    }
+
+    /**
+     * Method to estimate the memory used by an icon's image
+     * @param icon ImageIcon to measure
+     * @return long size in bytes
+     */
+    private static long sizeOf(ImageIcon icon) { return 4L * Math.max(icon.getIconWidth(), 0) * Math.max(icon.getIconHeight(), 0); }
+
+    /**
+     * Method to retrieve the number of lookups served from the cache
+     * @return long number of hits
+     */
+    public synchronized long getHits() { return hits; }
+
+    /**
+     * Method to retrieve the number of lookups that had to load the image
+     * @return long number of misses
+     */
+    public synchronized long getMisses() { return misses; }
+
+    /**
+     * Method to retrieve the number of images evicted
+     * @return long number of evictions
+     */
+    public synchronized long getEvictions() { return evictions; }
+
+    /**
+     * Method to retrieve the number of cached images
+     * @return int number of images
+     */
+    public synchronized int size() { return icons.size(); }
+
+}
@@ -0,0 +1,233 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * StockContainer decorator that records the count, errors and latency of every ProductStockContainer
+ * call and batch change to the container it wraps. The ShoppingCart's of a store record their
+ * operations here too, so the metrics cover every path to the inventory. Each operation's metrics
+ * are an OperationMetrics, which can be registered as JMX MBeans to be watched with standard tools
+ * such as JConsole. Recording costs two clock reads and a few striped counter increments per call
+ * @author Julian Nicolai 101154233
+ */
+public class InstrumentedStockContainer implements ProductStockContainer {
+
+    /**
+     * Operations of the inventory and of the store's ShoppingCart's that are recorded
+     */
+    public enum Operation {
+        /** getProductQuantity */
+        GET_PRODUCT_QUANTITY,
+        /** addProductQuantity */
+        ADD_PRODUCT_QUANTITY,
+        /** removeProductQuantity */
+        REMOVE_PRODUCT_QUANTITY,
+        /** getNumOfProducts */
+        GET_NUM_OF_PRODUCTS,
+        /** containsProduct */
+        CONTAINS_PRODUCT,
+        /** getProductStockInfo */
+        GET_PRODUCT_STOCK_INFO,
+        /** addProductQuantities */
+        ADD_PRODUCT_QUANTITIES,
+        /** removeProductQuantities */
+        REMOVE_PRODUCT_QUANTITIES,
+        /** ShoppingCart addProductQuantity */
+        CART_ADD_PRODUCT_QUANTITY,
+        /** ShoppingCart addProductQuantities */
+        CART_ADD_PRODUCT_QUANTITIES,
+        /** ShoppingCart removeProductQuantity */
+        CART_REMOVE_PRODUCT_QUANTITY,
+        /** ShoppingCart checkout */
+        CART_CHECKOUT
+    }
+
+    /**
+     * Container the calls are passed on to
+     */
+    private final StockContainer container;
+
+    /**
+     * Metrics of each operation
+     */
+    private final EnumMap<Operation, OperationMetrics> metrics;
+
+    /**
+     * Names the metrics are registered under with JMX, empty until registered
+     */
+    private final List<ObjectName> registeredNames;
+
+    /**
+     * Constructor for a decorator of the given container
+     * @param container StockContainer to record the calls of
+     */
+    public InstrumentedStockContainer(StockContainer container) {
+        this.container = container;
+        this.metrics = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) metrics.put(operation, new OperationMetrics());
+        this.registeredNames = new ArrayList<>();
+    }
+
+    /**
+     * Method to register the metrics of every operation with the platform MBean server, as
+     * com.company.store:type=ProductStockContainer,name=[name],operation=[operation]
+     * @param name String name of the container, unique among registered containers
+     */
+    public synchronized void registerMBeans(String name) {
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Operation operation : Operation.values()) {
+                ObjectName objectName = new ObjectName("com.company.store:type=ProductStockContainer,name="
+                        + ObjectName.quote(name) + ",operation=" + operation.name().toLowerCase(Locale.ROOT));
+                server.registerMBean(metrics.get(operation), objectName);
+                registeredNames.add(objectName);
+            }
+        } catch (JMException err) {
+            unregisterMBeans();
+            throw new IllegalArgumentException("Cannot register metrics of " + name + ": " + err.getMessage(), err);
+        }
+    }
+
+    /**
+     * Method to remove the metrics of every operation from the platform MBean server
+     */
+    public synchronized void unregisterMBeans() {
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : registeredNames) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException err) {
+                // already unregistered by someone else, nothing left to remove
+            }
+        }
+        registeredNames.clear();
+    }
+
+    /**
+     * Method to retrieve the metrics of an operation
+     * @param operation Operation recorded
+     * @return OperationMetrics of the operation
+     */
+    public OperationMetrics getMetrics(Operation operation) { return metrics.get(operation); }
+
+    @Override
+    public int getProductQuantity(Product product) {
+        OperationMetrics operation = metrics.get(Operation.GET_PRODUCT_QUANTITY);
+        long start = System.nanoTime();
+        try {
+            int quantity = container.getProductQuantity(product);
+            operation.record(System.nanoTime() - start);
+            return quantity;
+        } catch (RuntimeException err) {
+            operation.recordError(System.nanoTime() - start, err);
+            throw err;
+        }
+    }
+
+    @Override
+    public void addProductQuantity(Product product, int numStock) {
+        OperationMetrics operation = metrics.get(Operation.ADD_PRODUCT_QUANTITY);
+        long start = System.nanoTime();
+        try {
+            container.addProductQuantity(product, numStock);
+            operation.record(System.nanoTime() - start);
+        } catch (RuntimeException err) {
+            operation.recordError(System.nanoTime() - start, err);
+            throw err;
+        }
+    }
+
+    @Override
+    public void removeProductQuantity(Product product, int numStock) {
+        OperationMetrics operation = metrics.get(Operation.REMOVE_PRODUCT_QUANTITY);
+        long start = System.nanoTime();
+        try {
+            container.removeProductQuantity(product, numStock);
+            operation.record(System.nanoTime() - start);
+        } catch (RuntimeException err) {
+            operation.recordError(System.nanoTime() - start, err);
+            throw err;
+        }
+    }
+
+    @Override
+    public int getNumOfProducts() {
+        OperationMetrics operation = metrics.get(Operation.GET_NUM_OF_PRODUCTS);
+        long start = System.nanoTime();
+        try {
+            int numOfProducts = container.getNumOfProducts();
+            operation.record(System.nanoTime() - start);
+            return numOfProducts;
+        } catch (RuntimeException err) {
+            operation.recordError(System.nanoTime() - start, err);
+            throw err;
+        }
+    }
+
+    @Override
+    public boolean containsProduct(Product product) {
+        OperationMetrics operation = metrics.get(Operation.CONTAINS_PRODUCT);
+        long start = System.nanoTime();
+        try {
+            boolean contains = container.containsProduct(product);
+            operation.record(System.nanoTime() - start);
+            return contains;
+        } catch (RuntimeException err) {
+            operation.recordError(System.nanoTime() - start, err);
+            throw err;
+        }
+    }
+
+    @Override
+    public List<ProductEntry> getProductStockInfo() {
+        OperationMetrics operation = metrics.get(Operation.GET_PRODUCT_STOCK_INFO);
+        long start = System.nanoTime();
+        try {
+            List<ProductEntry> productStockInfo = container.getProductStockInfo();
+            operation.record(System.nanoTime() - start);
+            return productStockInfo;
+        } catch (RuntimeException err) {
+            operation.recordError(System.nanoTime() - start, err);
+            throw err;
+        }
+    }
+
+    /**
+     * Method to add stock to many products of the wrapped container at once
+     * @param products map of each Product to the number of units to be added
+     */
+    public void addProductQuantities(Map<Product, Integer> products) {
+        OperationMetrics operation = metrics.get(Operation.ADD_PRODUCT_QUANTITIES);
+        long start = System.nanoTime();
+        try {
+            container.addProductQuantities(products);
+            operation.record(System.nanoTime() - start);
+        } catch (RuntimeException err) {
+            operation.recordError(System.nanoTime() - start, err);
+            throw err;
+        }
+    }
+
+    /**
+     * Method to remove stock from many products of the wrapped container at once (all or nothing)
+     * @param products map of each Product to the number of units to be removed
+     */
+    public void removeProductQuantities(Map<Product, Integer> products) {
+        OperationMetrics operation = metrics.get(Operation.REMOVE_PRODUCT_QUANTITIES);
+        long start = System.nanoTime();
+        try {
+            container.removeProductQuantities(products);
+            operation.record(System.nanoTime() - start);
+        } catch (RuntimeException err) {
+            operation.recordError(System.nanoTime() - start, err);
+            throw err;
+        }
+    }
+
+}
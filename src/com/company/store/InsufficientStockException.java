@@ -0,0 +1,23 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+/**
+ * Exception thrown when more units are removed from a ProductStockContainer than it holds, such as
+ * an attempt to oversell a product
+ * @author Julian Nicolai 101154233
+ */
+public class InsufficientStockException extends IllegalArgumentException {
+
+    /**
+     * Serialization version of the exception, as exceptions are Serializable
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor for an InsufficientStockException
+     * @param message String detail message
+     */
+    public InsufficientStockException(String message) { super(message); }
+
+}
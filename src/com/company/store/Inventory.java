@@ -2,33 +2,168 @@
 
 package com.company.store;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Interface to manage the products and their stock
+ * Interface to manage the products and their stock. Safe for use by multiple threads: stock is
+ * reserved and released with compare-and-set on each ProductEntry, so there is no global lock.
+ * Every change is published at the current version, and openSnapshot gives a consistent read-only view
+ * of the inventory at one version without holding up changes. Products can be given a reorder
+ * threshold; those below it are kept in a low-stock set, and listeners are told as a product drops
+ * below. A persistent Inventory logs every change to an InventoryPersistence before making it, and
+ * waits for the log record to be durable before returning
  * @author Julian Nicolai 101154233
  */
-public class Inventory implements ProductStockContainer {
+public class Inventory implements StockContainer {
 
     /**
-     * List of products and their stock (ProductEntry's)
+     * List of products and their stock (ProductEntry's), only ever appended to so it is read without locking
      */
     private final List<ProductEntry> productList;
 
+    /**
+     * Index of ProductEntry's by product ID for constant time lookup
+     */
+    private final Map<UUID, ProductEntry> productIndex;
+
+    /**
+     * Listeners notified of added products and stock changes
+     */
+    private final List<InventoryListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Entries whose stock is below their reorder threshold, by product ID; updated after each change
+     * is published, without locking the set
+     */
+    private final Set<ProductEntry> lowStockEntries = new ConcurrentSkipListSet<>(Comparator.comparing(productEntry -> productEntry.getProduct().getID()));
+
+    /**
+     * Clock of the versions stock changes are published at
+     */
+    private final VersionClock clock;
+
+    /**
+     * Order batches stage their changes in, so two batches sharing products meet at their first shared product
+     */
+    static final Comparator<StagedChange> STAGING_ORDER = Comparator.comparing(change -> change.productEntry().getProduct().getID());
+
+    /**
+     * Change in stock of one product within a batch
+     * @param productEntry ProductEntry to change
+     * @param change integer units added (positive) or removed (negative)
+     */
+    record StagedChange(ProductEntry productEntry, int change) { }
+
+    /**
+     * Durable storage of the inventory, null if the inventory only lives in memory
+     */
+    private final InventoryPersistence persistence;
+
+    /**
+     * Lock held by each change to a persistent inventory while it is checked, logged and made, and
+     * while a snapshot is written; a change checked and logged under it cannot then fail, and the
+     * log holds changes in the order they were made
+     */
+    private final Lock changeLock;
+
+    /**
+     * Background thread writing periodic snapshots, null if the inventory only lives in memory
+     */
+    private final ScheduledExecutorService snapshotScheduler;
+
     /**
      * Inventory constructor initializes default products
      */
     public Inventory() {
-        this.productList = new ArrayList<>();
+        this.productList = new AppendOnlyList<>();
+        this.productIndex = new ConcurrentHashMap<>();
+        this.persistence = null;
+        this.changeLock = new ReentrantLock();
+        this.snapshotScheduler = null;
+        this.clock = new VersionClock();
+        addDefaultProducts(this);
+    }
+
+    /**
+     * Inventory constructor for an empty in-memory shard of a ShardedInventory, whose stock is
+     * versioned by the given clock and whose products are listed in the given list, both shared with
+     * the other shards
+     * @param clock VersionClock shared with the other shards
+     * @param productList AppendOnlyList of the products of every shard, also the lock they are added under
+     */
+    Inventory(VersionClock clock, AppendOnlyList<ProductEntry> productList) {
+        this.productList = productList;
+        this.productIndex = new ConcurrentHashMap<>();
+        this.persistence = null;
+        this.changeLock = new ReentrantLock();
+        this.snapshotScheduler = null;
+        this.clock = clock;
+    }
+
+    /**
+     * Inventory constructor that loads its products and stock from a memory-mapped catalog file;
+     * product strings are only decoded when first used
+     * @param catalog CatalogFile to load
+     */
+    public Inventory(CatalogFile catalog) {
+        this.productList = new AppendOnlyList<>();
+        this.productIndex = new ConcurrentHashMap<>();
+        this.persistence = null;
+        this.changeLock = new ReentrantLock();
+        this.snapshotScheduler = null;
+        this.clock = new VersionClock();
+
+        List<ProductEntry> catalogEntries = catalog.getProductEntries();
+        for (ProductEntry productEntry : catalogEntries) productIndex.put(productEntry.getProduct().getID(), productEntry);
+        productList.addAll(catalogEntries);
+    }
+
+    /**
+     * Inventory constructor that restores the products and stock saved by the given persistence,
+     * initializing the default products on first start, and snapshots periodically from then on
+     * @param persistence InventoryPersistence to restore from and log changes to
+     * @param snapshotInterval Duration between snapshots
+     */
+    public Inventory(InventoryPersistence persistence, Duration snapshotInterval) {
+        this.productList = new AppendOnlyList<>();
+        this.productIndex = new ConcurrentHashMap<>();
+        this.persistence = persistence;
+        this.changeLock = new ReentrantLock();
+        this.clock = new VersionClock();
+
+        List<ProductEntry> recoveredEntries = persistence.recover();
+        for (ProductEntry productEntry : recoveredEntries) productIndex.put(productEntry.getProduct().getID(), productEntry);
+        productList.addAll(recoveredEntries);
+
+        if (productList.isEmpty()) addDefaultProducts(this);
+
+        this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inventory-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = snapshotInterval.toMillis();
+        snapshotScheduler.scheduleWithFixedDelay(this::snapshot, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Method to add the store's default products to a container
+     * @param container ProductStockContainer to add the products to
+     */
+    static void addDefaultProducts(ProductStockContainer container) {
         try {
-            this.addProductQuantity(new Product("1 Gallon Milk Jug (empty)", 15.99, "src/com/company/images/product_images/milk.jpg", "Milk is an emulsion or colloid of butterfat globules within a water-based fluid that contains dissolved carbohydrates and protein aggregates with minerals."), 10);
-            this.addProductQuantity(new Product("Cheese", 12.95, "src/com/company/images/product_images/cheese.jpg", "Cheese is a dairy product, derived from milk and produced in wide ranges of flavors, textures and forms by coagulation of the milk protein casein."), 80);
-            this.addProductQuantity(new Product("PHAT\u2122 Sandwich", 89.99, "src/com/company/images/product_images/sandwich.jpg", "A sandwich is a food typically consisting of vegetables, sliced cheese or meat, placed on or between slices of bread, or more generally any dish wherein bread serves as a container or wrapper for another food type."), 3);
-            this.addProductQuantity(new Product("Artisan Loaf", 5.99, "src/com/company/images/product_images/bread.jpg", "Bread is the product of baking a mixture of flour, water, salt, yeast and other ingredients and kneaded until a ball of dough is formed."), 14);
-            this.addProductQuantity(new Product("God Nuggs", 69.69, "src/com/company/images/product_images/nuggets.jpg", "A chicken nugget is a food product consisting of a small piece of deboned chicken meat that is breaded or battered, then deep-fried or baked. "), 2);
-            this.addProductQuantity(new Product("55 Gallon Industrial Drum of Mountain Dew (included straw)", 420.69, "src/com/company/images/product_images/dew.jpg", "Mountain Dew is a citrus-flavored soft drink, made by the PepsiCo company. The drink has more caffeine (a stimulant) than other soft drinks like Pepsi and Coca-Cola."), 8);
-            this.addProductQuantity(new Product("The Kids Meal", 2.99, "src/com/company/images/product_images/kids_meal.jpg", "The kids' meal or children's meal is a fast food combination meal tailored to and marketed to children. Most kids' meals come in colourful bags or cardboard boxes with depictions of activities on the bag or box and a plastic toy inside."), 429);
-            this.addProductQuantity(new Product("Lettuce (pre wilted)", 6.79, "src/com/company/images/product_images/lettuce.jpg", "Lettuce, Lactuca sativa, is a leafy herbaceous annual or biennial plant in the family Asteraceae grown for its leaves which are used as a salad green."), 23);
+            container.addProductQuantity(new Product("1 Gallon Milk Jug (empty)", 15.99, "src/com/company/images/product_images/milk.jpg", "Milk is an emulsion or colloid of butterfat globules within a water-based fluid that contains dissolved carbohydrates and protein aggregates with minerals."), 10);
+            container.addProductQuantity(new Product("Cheese", 12.95, "src/com/company/images/product_images/cheese.jpg", "Cheese is a dairy product, derived from milk and produced in wide ranges of flavors, textures and forms by coagulation of the milk protein casein."), 80);
+            container.addProductQuantity(new Product("PHAT\u2122 Sandwich", 89.99, "src/com/company/images/product_images/sandwich.jpg", "A sandwich is a food typically consisting of vegetables, sliced cheese or meat, placed on or between slices of bread, or more generally any dish wherein bread serves as a container or wrapper for another food type."), 3);
+            container.addProductQuantity(new Product("Artisan Loaf", 5.99, "src/com/company/images/product_images/bread.jpg", "Bread is the product of baking a mixture of flour, water, salt, yeast and other ingredients and kneaded until a ball of dough is formed."), 14);
+            container.addProductQuantity(new Product("God Nuggs", 69.69, "src/com/company/images/product_images/nuggets.jpg", "A chicken nugget is a food product consisting of a small piece of deboned chicken meat that is breaded or battered, then deep-fried or baked. "), 2);
+            container.addProductQuantity(new Product("55 Gallon Industrial Drum of Mountain Dew (included straw)", 420.69, "src/com/company/images/product_images/dew.jpg", "Mountain Dew is a citrus-flavored soft drink, made by the PepsiCo company. The drink has more caffeine (a stimulant) than other soft drinks like Pepsi and Coca-Cola."), 8);
+            container.addProductQuantity(new Product("The Kids Meal", 2.99, "src/com/company/images/product_images/kids_meal.jpg", "The kids' meal or children's meal is a fast food combination meal tailored to and marketed to children. Most kids' meals come in colourful bags or cardboard boxes with depictions of activities on the bag or box and a plastic toy inside."), 429);
+            container.addProductQuantity(new Product("Lettuce (pre wilted)", 6.79, "src/com/company/images/product_images/lettuce.jpg", "Lettuce, Lactuca sativa, is a leafy herbaceous annual or biennial plant in the family Asteraceae grown for its leaves which are used as a salad green."), 23);
         } catch (IllegalArgumentException err) {
             StoreView.dialog("system-error", err.getMessage(), "Invalid Parameter - Product Addition");
         }
@@ -38,26 +173,20 @@ public class Inventory implements ProductStockContainer {
     /**
      * Method used to retrieve a ProductEntry object via the Product's ID
      * @param product Product to retrieve entry for
-     * @return ProductEntry object of ID, returns null product if doesn't exist
+     * @return ProductEntry object of ID, returns null if doesn't exist
      */
-    private ProductEntry getProductEntry(Product product) {
-
-        ProductEntry matchingProductEntry = new ProductEntry(); // starting state is no matching ProductEntry (null product)
-        UUID id = product.getID();
-
-        if (productList.size() == 0) return matchingProductEntry; // if empty, return null ProductEntry for no match
-
-        // search for matching product entry
-        for (ProductEntry currentProductEntry : productList) {
-            if (currentProductEntry.getProduct().getID().equals(id)) {
-                matchingProductEntry = currentProductEntry;
-                break;
-            }
-        }
-
-        // return match, if nothing is found remains null product
-        return matchingProductEntry;
+    @Override
+    public ProductEntry getProductEntry(Product product) { return productIndex.get(product.getID()); }
 
+    /**
+     * Method to find a product by its ID
+     * @param id UUID of the product
+     * @return Product with the ID, null if it does not exist
+     */
+    @Override
+    public Product getProduct(UUID id) {
+        ProductEntry productEntry = productIndex.get(id);
+        return productEntry != null ? productEntry.getProduct() : null;
     }
 
     /**
@@ -68,16 +197,70 @@ public class Inventory implements ProductStockContainer {
     @Override
     public void addProductQuantity(Product product, int numStock) {
 
+        if (numStock < 0) throw new IllegalArgumentException("Number of units must be 0 or more.");
+
+        long logSequence;
+        beginChange();
+        try {
+            logSequence = applyAddition(product, numStock);
+        } finally {
+            endChange();
+        }
+        awaitDurable(logSequence);
+    }
+
+    /**
+     * Method to add stock to a product, creating its entry if it does not exist yet
+     * @param product Product to add stock to
+     * @param numStock amount of stock to add
+     * @return sequence number of the change in the log, 0 if not persistent
+     */
+    private long applyAddition(Product product, int numStock) {
+
         ProductEntry productEntry = getProductEntry(product);
 
-        if (numStock < 0) {
-            throw new IllegalArgumentException("Number of units must be 0 or more.");
-        } else if (productEntry.getProduct().getName() == null) {
-            ProductEntry newProductEntry = new ProductEntry(product, numStock);
-            this.productList.add(newProductEntry);
-        } else {
-            productEntry.setStock(productEntry.getStock() + numStock);
+        if (productEntry == null) {
+            // new products are added one at a time, under the list's lock so shards sharing it list them in
+            // the order of their versions, and are logged before other threads can change their stock
+            synchronized (productList) {
+                productEntry = getProductEntry(product);
+                if (productEntry == null) {
+                    long logSequence = persistence != null ? persistence.logNewProduct(product, numStock) : 0;
+                    // stamped once listed, so products are listed in the order of the versions they appear at
+                    ProductEntry newProductEntry = new ProductEntry(product, numStock, ProductEntry.COMMITTED);
+                    this.productIndex.put(product.getID(), newProductEntry);
+                    this.productList.add(newProductEntry);
+                    newProductEntry.stamp(clock);
+                    for (InventoryListener listener : listeners) listener.productAdded(product);
+                    return logSequence;
+                }
+            }
         }
+
+        return applyChange(productEntry, numStock);
+    }
+
+    /**
+     * Method to change the stock of an existing product, logging the change first if the inventory
+     * is persistent, and notify listeners of it
+     * @param productEntry ProductEntry to change
+     * @param change integer units added (positive) or removed (negative)
+     * @return sequence number of the change in the log, 0 if not persistent
+     */
+    private long applyChange(ProductEntry productEntry, int change) {
+
+        long logSequence = 0;
+        if (persistence != null) {
+            // changes to a persistent inventory are made one at a time, so a change checked and logged here cannot fail
+            if (productEntry.getStock() + change < 0)
+                throw new InsufficientStockException("Number of units specified exceeds available stock.");
+            logSequence = persistence.logStockChange(productEntry.getProduct().getID(), change);
+        }
+
+        if (!productEntry.changeStock(change, clock))
+            throw new InsufficientStockException("Number of units specified exceeds available stock.");
+        stockChanged(productEntry);
+        return logSequence;
     }
 
     /**
@@ -89,15 +272,343 @@ public class Inventory implements ProductStockContainer {
     public void removeProductQuantity(Product product, int numStock) {
 
         ProductEntry productEntry = getProductEntry(product);
-        int stock = productEntry.getStock();
 
         if (numStock < 1) {
             throw new IllegalArgumentException("Number of units must be 1 or more.");
-        } else if (stock - numStock < 0){
-            throw new IllegalArgumentException("Number of units specified exceeds available stock.");
-        } else if (productEntry.getProduct().getName() == null) {
-            throw new IllegalArgumentException("The product requested does not exist.");
-        } else productEntry.setStock(productEntry.getStock() - numStock);
+        } else if (productEntry == null) {
+            throw new ProductNotFoundException("The product requested does not exist.");
+        }
+
+        long logSequence;
+        beginChange();
+        try {
+            logSequence = applyChange(productEntry, -numStock);
+        } finally {
+            endChange();
+        }
+        awaitDurable(logSequence);
+    }
+
+    /**
+     * Method to add stock to many products at once, adding any products that do not exist yet
+     * @param products map of each Product to the amount of stock to add
+     */
+    @Override
+    public void addProductQuantities(Map<Product, Integer> products) {
+
+        // validate every request before adding any stock so a bad request adds nothing
+        for (int numStock : products.values()) {
+            if (numStock < 0) throw new IllegalArgumentException("Number of units must be 0 or more.");
+        }
+
+        StagedChange[] changes = new StagedChange[products.size()];
+        int numChanges = 0;
+
+        long logSequence = 0;
+        beginChange();
+        try {
+            // new products are added on their own, then the existing products are restocked at one version
+            for (Map.Entry<Product, Integer> request : products.entrySet()) {
+                ProductEntry productEntry = getProductEntry(request.getKey());
+                if (productEntry == null) {
+                    logSequence = Math.max(logSequence, applyAddition(request.getKey(), request.getValue()));
+                } else {
+                    changes[numChanges++] = new StagedChange(productEntry, request.getValue());
+                }
+            }
+            logSequence = Math.max(logSequence, applyAll(changes, numChanges));
+        } finally {
+            endChange();
+        }
+        awaitDurable(logSequence);
+    }
+
+    /**
+     * Method to remove stock from many products at once; either every product has its stock
+     * removed or, if any product is missing or short on stock, none do
+     * @param products map of each Product to the amount of stock to remove
+     */
+    @Override
+    public void removeProductQuantities(Map<Product, Integer> products) {
+
+        StagedChange[] changes = new StagedChange[products.size()];
+        int numChanges = 0;
+
+        // resolve and validate every request before reserving anything
+        for (Map.Entry<Product, Integer> request : products.entrySet()) {
+            ProductEntry productEntry = getProductEntry(request.getKey());
+            int numStock = request.getValue();
+
+            if (numStock < 1) {
+                throw new IllegalArgumentException("Number of units must be 1 or more.");
+            } else if (productEntry == null) {
+                throw new ProductNotFoundException("The product requested does not exist.");
+            }
+
+            changes[numChanges++] = new StagedChange(productEntry, -numStock);
+        }
+
+        long logSequence;
+        beginChange();
+        try {
+            logSequence = applyAll(changes, numChanges);
+        } finally {
+            endChange();
+        }
+        awaitDurable(logSequence);
+    }
+
+    /**
+     * Method to make a batch of changes all at once, merging changes to the same product; either
+     * every change is made or, on the first shortage, none are. In a persistent inventory the
+     * changes are logged while staged, before they are made
+     * @param changes array of StagedChange's, sorted and merged in place
+     * @param numChanges number of changes in the array
+     * @return sequence number of the last change in the log, 0 if not persistent
+     */
+    private long applyAll(StagedChange[] changes, int numChanges) {
+
+        int numMerged = merge(changes, numChanges);
+
+        // a batch is only aborted by another change meeting it while staged, and is then staged again;
+        // changes to a persistent inventory are made one at a time, so a logged batch is never aborted
+        long logSequence = 0;
+        ProductEntry.Batch batch;
+        do {
+            batch = stageAll(changes, numMerged);
+            try {
+                for (int i = 0; i < numMerged && persistence != null; i++) {
+                    logSequence = persistence.logStockChange(changes[i].productEntry().getProduct().getID(), changes[i].change());
+                }
+            } catch (RuntimeException err) {
+                batch.abort();
+                throw err;
+            }
+        } while (!batch.commit(clock));
+
+        for (int i = 0; i < numMerged; i++) stockChanged(changes[i].productEntry());
+        return logSequence;
+    }
+
+    /**
+     * Method to sort a batch of changes into staging order and merge changes to the same product
+     * @param changes array of StagedChange's, sorted and merged in place
+     * @param numChanges number of changes in the array
+     * @return int number of merged changes at the start of the array
+     */
+    static int merge(StagedChange[] changes, int numChanges) {
+
+        Arrays.sort(changes, 0, numChanges, STAGING_ORDER);
+
+        // a product requested through two Product objects with the same ID must only be staged once
+        int numMerged = 0;
+        for (int i = 0; i < numChanges; i++) {
+            if (numMerged > 0 && changes[numMerged - 1].productEntry() == changes[i].productEntry()) {
+                changes[numMerged - 1] = new StagedChange(changes[i].productEntry(), changes[numMerged - 1].change() + changes[i].change());
+            } else {
+                changes[numMerged++] = changes[i];
+            }
+        }
+        return numMerged;
+    }
+
+    /**
+     * Method to stage every change of a merged batch, reserving stock for all of them before any is
+     * made; on a shortage or any other failure the staged changes are withdrawn
+     * @param changes array of merged StagedChange's in staging order
+     * @param numMerged number of changes in the array
+     * @return ProductEntry.Batch with every change staged, to be committed
+     */
+    static ProductEntry.Batch stageAll(StagedChange[] changes, int numMerged) {
+
+        ProductEntry.Batch batch = new ProductEntry.Batch(numMerged);
+        try {
+            for (int i = 0; i < numMerged; i++) {
+                if (!batch.stage(changes[i].productEntry(), changes[i].change())) {
+                    throw new InsufficientStockException("Number of units specified exceeds available stock for "
+                            + changes[i].productEntry().getProduct().getName() + ".");
+                }
+            }
+        } catch (RuntimeException err) {
+            batch.abort();
+            throw err;
+        }
+        return batch;
+    }
+
+    /**
+     * Method to add an entry to, or remove it from, the low-stock set to match its published stock
+     * and reorder threshold. Most changes cross no threshold and only read the entry; the entry's
+     * own lock is taken when it has to move
+     * @param productEntry ProductEntry whose stock or threshold changed
+     * @return boolean true if the entry was added to the set, its product having dropped below its threshold
+     */
+    private boolean updateLowStock(ProductEntry productEntry) {
+
+        if (isLowStock(productEntry) == productEntry.isLowStock()) return false;
+
+        boolean lowered = false;
+        synchronized (productEntry) {
+            // checked again after each move: a change made meanwhile may have seen the old flag and left the set to this thread
+            boolean low;
+            while ((low = isLowStock(productEntry)) != productEntry.isLowStock()) {
+                if (low) lowStockEntries.add(productEntry);
+                else lowStockEntries.remove(productEntry);
+                productEntry.setLowStock(low);
+                lowered = low;
+            }
+        }
+        return lowered;
+    }
+
+    /**
+     * Method to check whether a product's stock is below its reorder threshold
+     * @param productEntry ProductEntry to check
+     * @return boolean true if the stock is below the threshold, never for a threshold of 0
+     */
+    private static boolean isLowStock(ProductEntry productEntry) {
+        return productEntry.getStock() < productEntry.getReorderThreshold();
+    }
+
+    /**
+     * Method to set the stock below which a product is low and should be reordered; listeners are
+     * told if its stock is already below the new threshold
+     * @param product Product to set the threshold of
+     * @param threshold integer reorder threshold, 0 for none
+     */
+    @Override
+    public void setReorderThreshold(Product product, int threshold) {
+
+        ProductEntry productEntry = getProductEntry(product);
+
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Reorder threshold must be 0 or more.");
+        } else if (productEntry == null) {
+            throw new ProductNotFoundException("The product requested does not exist.");
+        }
+
+        productEntry.setReorderThreshold(threshold);
+        if (updateLowStock(productEntry)) {
+            for (InventoryListener listener : listeners) listener.stockLow(product, productEntry.getStock(), threshold);
+        }
+    }
+
+    /**
+     * Method to retrieve the reorder threshold of a product
+     * @param product Product to retrieve
+     * @return integer reorder threshold, 0 for none
+     */
+    @Override
+    public int getReorderThreshold(Product product) {
+        ProductEntry productEntry = getProductEntry(product);
+
+        if (productEntry == null)
+            throw new ProductNotFoundException("The product requested does not exist.");
+
+        return productEntry.getReorderThreshold();
+    }
+
+    /**
+     * Method to list the products below their reorder threshold, in time proportional to their
+     * number however many products there are
+     * @return List of the low-stock ProductEntry's, a copy in product ID order
+     */
+    @Override
+    public List<ProductEntry> getLowStockProducts() { return new ArrayList<>(lowStockEntries); }
+
+    /**
+     * Method to open a consistent read-only view of the inventory at the latest version; the
+     * snapshot must be closed so the stock values it reads can be dropped
+     * @return InventorySnapshot of the inventory
+     */
+    @Override
+    public InventorySnapshot openSnapshot() {
+        long snapshotVersion = clock.pin();
+        return new InventorySnapshot(this, clock, snapshotVersion, listedAt(productList, snapshotVersion, clock));
+    }
+
+    /**
+     * Method to list the products that existed at a version
+     * @param productList List of products in the order they were added and stamped
+     * @param version long version, pinned by an open snapshot
+     * @param clock VersionClock the products are stamped by
+     * @return List of ProductEntry's at the version, in the order they were added
+     */
+    static List<ProductEntry> listedAt(List<ProductEntry> productList, long version, VersionClock clock) {
+        // products are listed in the order they appear, so any added after the version are at the end
+        int numProducts = productList.size();
+        while (numProducts > 0 && productList.get(numProducts - 1).getStock(version, clock) < 0) numProducts--;
+        return productList.subList(0, numProducts);
+    }
+
+    /**
+     * Method to update the low-stock set after a change in stock, and notify listeners of it
+     * @param productEntry ProductEntry whose stock changed
+     */
+    void stockChanged(ProductEntry productEntry) {
+        boolean lowered = updateLowStock(productEntry);
+        Product product = productEntry.getProduct();
+        for (InventoryListener listener : listeners) {
+            listener.stockChanged(product);
+            if (lowered) listener.stockLow(product, productEntry.getStock(), productEntry.getReorderThreshold());
+        }
+    }
+
+    /**
+     * Method to register a listener to be notified of added products and stock changes
+     * @param listener InventoryListener to notify
+     */
+    @Override
+    public void addListener(InventoryListener listener) { listeners.add(listener); }
+
+    /**
+     * Method to stop notifying a listener
+     * @param listener InventoryListener to remove
+     */
+    @Override
+    public void removeListener(InventoryListener listener) { listeners.remove(listener); }
+
+    /**
+     * Method called before changing stock; holds off other changes and snapshots until endChange if persistent
+     */
+    private void beginChange() { if (persistence != null) changeLock.lock(); }
+
+    /**
+     * Method called after logging and changing stock
+     */
+    private void endChange() { if (persistence != null) changeLock.unlock(); }
+
+    /**
+     * Method to wait for a logged change to reach the disk if the inventory is persistent
+     * @param logSequence sequence number of the change in the log
+     */
+    private void awaitDurable(long logSequence) { if (persistence != null) persistence.awaitDurable(logSequence); }
+
+    /**
+     * Method to write a snapshot of the whole inventory and empty the log, stock changes wait until it is written
+     */
+    public void snapshot() {
+
+        if (persistence == null) throw new IllegalStateException("Inventory is not persistent.");
+
+        changeLock.lock();
+        try {
+            persistence.writeSnapshot(productList);
+        } finally {
+            changeLock.unlock();
+        }
+    }
+
+    /**
+     * Method to stop snapshots and close the persistence once every change is on disk; does nothing
+     * if the inventory is not persistent
+     */
+    public void close() {
+
+        if (persistence == null) return;
+
+        snapshotScheduler.shutdownNow();
+        persistence.close();
     }
 
     /**
@@ -109,8 +620,8 @@ public class Inventory implements ProductStockContainer {
     public int getProductQuantity(Product product) {
         ProductEntry productEntry = getProductEntry(product);
 
-        if (productEntry.getProduct().getName() == null)
-            throw new IllegalArgumentException("The product requested does not exist.");
+        if (productEntry == null)
+            throw new ProductNotFoundException("The product requested does not exist.");
 
         return productEntry.getStock();
     }
@@ -122,11 +633,19 @@ public class Inventory implements ProductStockContainer {
     @Override
     public int getNumOfProducts() { return productList.size(); }
 
+    /**
+     * Method to check whether a product exists in inventory
+     * @param product Product to check
+     * @return boolean true if the product has an entry
+     */
+    @Override
+    public boolean containsProduct(Product product) { return productIndex.containsKey(product.getID()); }
+
     /**
      * Method to retrieve all product info in Inventory
      * @return List of all products and their data in a 2D list
      */
     @Override
-    public List<ProductEntry> getProductStockInfo() { return productList; }
+    public List<ProductEntry> getProductStockInfo() { return Collections.unmodifiableList(productList); }
 
 }
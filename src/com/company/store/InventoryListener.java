@@ -0,0 +1,33 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+/**
+ * Interface for objects notified of changes to an Inventory. Notifications are made on the thread
+ * that made the change, while it is still in progress, so listeners must be quick and must not block
+ * @author Julian Nicolai 101154233
+ */
+public interface InventoryListener {
+
+    /**
+     * Method called after a product is added to the inventory
+     * @param product Product added
+     */
+    void productAdded(Product product);
+
+    /**
+     * Method called after the stock of an existing product changes
+     * @param product Product whose stock changed
+     */
+    void stockChanged(Product product);
+
+    /**
+     * Method called after a stock change, or a new reorder threshold, leaves a product below its
+     * reorder threshold when it was not before
+     * @param product Product low on stock
+     * @param stock integer stock left
+     * @param threshold integer reorder threshold of the product
+     */
+    default void stockLow(Product product, int stock, int threshold) { }
+
+}
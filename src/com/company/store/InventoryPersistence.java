@@ -0,0 +1,503 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Durable storage for an Inventory: every stock change is appended to a write-ahead log before the
+ * inventory makes it, and the whole inventory is periodically written to a compact snapshot (a
+ * CatalogFile, memory-mapped on recovery so product strings are only decoded when used) so the log
+ * stays short. Log records are fsynced in groups by a single flusher thread: while one fsync is
+ * running, new records collect and are all made durable by the next one (up to the fsync batch
+ * size). If the log cannot be written, nothing more is logged or acknowledged: appending and
+ * waiting for durability both throw an UncheckedIOException from then on
+ * @author Julian Nicolai 101154233
+ */
+public class InventoryPersistence {
+
+    /**
+     * Log record type for a product being added to the inventory
+     */
+    private static final byte NEW_PRODUCT = 1;
+
+    /**
+     * Log record type for a change to the stock of an existing product
+     */
+    private static final byte STOCK_CHANGE = 2;
+
+    /**
+     * Path of the write-ahead log file
+     */
+    private final Path logPath;
+
+    /**
+     * Path of the snapshot file
+     */
+    private final Path snapshotPath;
+
+    /**
+     * Maximum number of log records made durable by a single fsync
+     */
+    private final int fsyncBatchSize;
+
+    /**
+     * Lock guarding the pending records and sequence numbers below
+     */
+    private final Object logLock;
+
+    /**
+     * Encoded records waiting to be written, oldest first
+     */
+    private final ArrayDeque<ByteBuffer> pendingRecords;
+
+    /**
+     * Sequence number of the last record appended
+     */
+    private long appendedSequence;
+
+    /**
+     * Sequence number of the last record known to be on disk
+     */
+    private long durableSequence;
+
+    /**
+     * Channel of the open write-ahead log, null until recovered
+     */
+    private FileChannel logChannel;
+
+    /**
+     * Thread writing and fsyncing the pending records
+     */
+    private Thread flusher;
+
+    /**
+     * Error that stopped the flusher, null while the log is being written
+     */
+    private IOException failure;
+
+    /**
+     * Number of records written to the log
+     */
+    private long recordsWritten;
+
+    /**
+     * Number of fsyncs of the log
+     */
+    private long fsyncs;
+
+    /**
+     * Constructor for persistence stored in the given directory
+     * @param directory Path of the directory holding the log and snapshot, created if missing
+     * @param fsyncBatchSize maximum number of log records per fsync
+     */
+    public InventoryPersistence(Path directory, int fsyncBatchSize) {
+
+        if (fsyncBatchSize < 1) throw new IllegalArgumentException("Fsync batch size must be 1 or more.");
+
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException err) {
+            throw new UncheckedIOException(err);
+        }
+
+        this.logPath = directory.resolve("inventory.log");
+        this.snapshotPath = directory.resolve("inventory.snapshot");
+        this.fsyncBatchSize = fsyncBatchSize;
+        this.logLock = new Object();
+        this.pendingRecords = new ArrayDeque<>();
+    }
+
+    /**
+     * Method to rebuild the inventory contents from the snapshot and log, then open the log for
+     * appending. Must be called once before anything is logged
+     * @return List of recovered ProductEntry's in the order they were first added
+     */
+    public List<ProductEntry> recover() {
+
+        Map<UUID, ProductEntry> entries = new LinkedHashMap<>();
+
+        try {
+            long snapshotSequence = readSnapshot(entries);
+            long lastSequence = replayLog(entries, snapshotSequence);
+
+            synchronized (logLock) {
+                appendedSequence = lastSequence;
+                durableSequence = lastSequence;
+            }
+
+            logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            logChannel.position(logChannel.size());
+        } catch (IOException err) {
+            throw new UncheckedIOException(err);
+        }
+
+        flusher = new Thread(this::flushLoop, "inventory-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Method to read the snapshot, if one exists, into the map of entries
+     * @param entries map to add the snapshot's entries to
+     * @return sequence number of the last log record included in the snapshot
+     */
+    private long readSnapshot(Map<UUID, ProductEntry> entries) {
+
+        if (!Files.exists(snapshotPath)) return 0;
+
+        CatalogFile snapshot = CatalogFile.open(snapshotPath);
+        for (ProductEntry productEntry : snapshot.getProductEntries()) {
+            entries.put(productEntry.getProduct().getID(), productEntry);
+        }
+        return snapshot.getSequence();
+    }
+
+    /**
+     * Method to apply every log record newer than the snapshot to the map of entries. A torn record
+     * at the end of the log (from a crash mid-write) ends the replay and is cut off
+     * @param entries map of entries to update
+     * @param snapshotSequence sequence number of the last record included in the snapshot
+     * @return sequence number of the last record in the log
+     */
+    private long replayLog(Map<UUID, ProductEntry> entries, long snapshotSequence) throws IOException {
+
+        long lastSequence = snapshotSequence;
+        if (!Files.exists(logPath)) return lastSequence;
+
+        long validLength = 0;
+        long logSize = Files.size(logPath);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logPath)))) {
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length < 0 || length > logSize - validLength - 8) break;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    if (checksum != checksum(payload, 0, length)) break;
+                } catch (EOFException err) {
+                    break;
+                }
+                validLength += 8 + payload.length;
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                long sequence = record.readLong();
+                byte type = record.readByte();
+                lastSequence = Math.max(lastSequence, sequence);
+                if (sequence <= snapshotSequence) continue; // already part of the snapshot
+
+                if (type == NEW_PRODUCT) {
+                    Product product = readProduct(record);
+                    entries.put(product.getID(), new ProductEntry(product, record.readInt()));
+                } else if (type == STOCK_CHANGE) {
+                    ProductEntry productEntry = entries.get(new UUID(record.readLong(), record.readLong()));
+                    int change = record.readInt();
+                    if (productEntry != null) productEntry.setStock(productEntry.getStock() + change);
+                }
+            }
+        }
+
+        // drop any torn record so new records are appended after the last good one
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.WRITE)) {
+            if (channel.size() > validLength) channel.truncate(validLength);
+        }
+
+        return lastSequence;
+    }
+
+    /**
+     * Method to log a product being added to the inventory
+     * @param product Product added
+     * @param stock integer starting stock of the product
+     * @return sequence number of the record, to be passed to awaitDurable
+     */
+    public long logNewProduct(Product product, int stock) {
+        return append(NEW_PRODUCT, out -> {
+            writeProduct(out, product);
+            out.writeInt(stock);
+        });
+    }
+
+    /**
+     * Method to log a change in the stock of an existing product
+     * @param id UUID of the product
+     * @param change integer units added (positive) or removed (negative)
+     * @return sequence number of the record, to be passed to awaitDurable
+     */
+    public long logStockChange(UUID id, int change) {
+        return append(STOCK_CHANGE, out -> {
+            out.writeLong(id.getMostSignificantBits());
+            out.writeLong(id.getLeastSignificantBits());
+            out.writeInt(change);
+        });
+    }
+
+    /**
+     * Writer of a log record's body
+     */
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Method to encode a record and queue it for the flusher
+     * @param type byte record type
+     * @param body RecordWriter writing the body of the record
+     * @return sequence number of the record
+     */
+    private long append(byte type, RecordWriter body) {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        synchronized (logLock) {
+            checkFailure();
+            long sequence = ++appendedSequence;
+            try {
+                out.writeInt(0); // length, filled in below
+                out.writeInt(0); // checksum, filled in below
+                out.writeLong(sequence);
+                out.writeByte(type);
+                body.write(out);
+            } catch (IOException err) {
+                throw new UncheckedIOException(err);
+            }
+
+            ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+            int length = record.capacity() - 8;
+            record.putInt(0, length);
+            record.putInt(4, checksum(record.array(), 8, length));
+
+            pendingRecords.add(record);
+            logLock.notifyAll();
+            return sequence;
+        }
+    }
+
+    /**
+     * Method to block until the log record with the given sequence number is on disk
+     * @param sequence long sequence number returned when the record was logged
+     * @throws UncheckedIOException if the log could not be written before the record reached the disk
+     */
+    public void awaitDurable(long sequence) {
+        synchronized (logLock) {
+            while (durableSequence < sequence) {
+                checkFailure();
+                try {
+                    logLock.wait();
+                } catch (InterruptedException err) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the inventory log.", err);
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to throw the error that stopped the flusher, if there was one; called holding logLock
+     */
+    private void checkFailure() {
+        if (failure != null) throw new UncheckedIOException("The inventory log could not be written.", failure);
+    }
+
+    /**
+     * Loop run by the flusher thread: takes up to a batch of pending records, writes them, and
+     * fsyncs once for the whole batch
+     */
+    private void flushLoop() {
+
+        ByteBuffer[] batch = new ByteBuffer[fsyncBatchSize];
+
+        while (true) {
+            int batchLength = 0;
+            long batchSequence;
+
+            synchronized (logLock) {
+                while (pendingRecords.isEmpty()) {
+                    try {
+                        logLock.wait();
+                    } catch (InterruptedException err) {
+                        return;
+                    }
+                }
+                while (batchLength < fsyncBatchSize && !pendingRecords.isEmpty()) {
+                    batch[batchLength++] = pendingRecords.poll();
+                }
+                batchSequence = durableSequence + batchLength;
+            }
+
+            try {
+                // a gathering write fills the buffers in order, so the last one empties last
+                while (batch[batchLength - 1].hasRemaining()) logChannel.write(batch, 0, batchLength);
+                logChannel.force(false);
+            } catch (IOException err) {
+                // a log that cannot be written cannot be trusted; stop acknowledging writes and fail the waiting ones
+                synchronized (logLock) {
+                    failure = err;
+                    logLock.notifyAll();
+                }
+                return;
+            }
+
+            synchronized (logLock) {
+                recordsWritten += batchLength;
+                fsyncs++;
+                durableSequence = batchSequence;
+                logLock.notifyAll();
+            }
+            Arrays.fill(batch, 0, batchLength, null);
+        }
+    }
+
+    /**
+     * Method to write a snapshot of the given entries and empty the log. The caller must stop all
+     * stock changes while this runs so the entries match the last logged record
+     * @param entries List of every ProductEntry in the inventory
+     */
+    public void writeSnapshot(List<ProductEntry> entries) {
+
+        long sequence;
+        synchronized (logLock) {
+            sequence = appendedSequence;
+        }
+        awaitDurable(sequence);
+
+        CatalogFile.write(snapshotPath, entries, sequence);
+
+        try {
+            // every logged record is now in the snapshot; replay skips them even if this truncate is lost
+            logChannel.truncate(0);
+            logChannel.position(0);
+            logChannel.force(true);
+        } catch (IOException err) {
+            throw new UncheckedIOException(err);
+        }
+    }
+
+    /**
+     * Method to retrieve the number of records written to the log
+     * @return long number of records
+     */
+    public long getRecordsWritten() {
+        synchronized (logLock) {
+            return recordsWritten;
+        }
+    }
+
+    /**
+     * Method to retrieve the number of fsyncs of the log; records written divided by this is the
+     * average group commit size
+     * @return long number of fsyncs
+     */
+    public long getFsyncs() {
+        synchronized (logLock) {
+            return fsyncs;
+        }
+    }
+
+    /**
+     * Method to stop the flusher and close the log, once every logged record is on disk; the log is
+     * closed even if it could not be written, and the error is then thrown
+     */
+    public void close() {
+
+        long sequence;
+        synchronized (logLock) {
+            sequence = appendedSequence;
+        }
+
+        try {
+            awaitDurable(sequence);
+        } finally {
+            flusher.interrupt();
+            try {
+                flusher.join();
+                logChannel.close();
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+            } catch (IOException err) {
+                throw new UncheckedIOException(err);
+            }
+        }
+    }
+
+    /**
+     * Method to write all of a product's attributes
+     * @param out DataOutputStream to write to
+     * @param product Product to write
+     */
+    private static void writeProduct(DataOutputStream out, Product product) throws IOException {
+        out.writeLong(product.getID().getMostSignificantBits());
+        out.writeLong(product.getID().getLeastSignificantBits());
+        writeString(out, product.getName());
+        out.writeDouble(product.getPrice());
+        writeString(out, product.getImage());
+        writeString(out, product.getDescription());
+    }
+
+    /**
+     * Method to read a product written by writeProduct
+     * @param in DataInputStream to read from
+     * @return Product read
+     */
+    private static Product readProduct(DataInputStream in) throws IOException {
+        UUID id = new UUID(in.readLong(), in.readLong());
+        String name = readString(in);
+        double price = in.readDouble();
+        String image = readString(in);
+        String description = readString(in);
+        return new Product(id, name, price, image, description);
+    }
+
+    /**
+     * Method to write a length prefixed UTF-8 string, -1 length for null
+     * @param out DataOutputStream to write to
+     * @param string String to write
+     */
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Method to read a string written by writeString
+     * @param in DataInputStream to read from
+     * @return String read
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Method to compute the CRC32 checksum of part of an array
+     * @param bytes array to checksum
+     * @param offset int start of the range
+     * @param length int length of the range
+     * @return int checksum
+     */
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+}
@@ -0,0 +1,154 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.util.*;
+
+/**
+ * Read-only view of an Inventory's products and stock at one version. Opening a snapshot copies
+ * nothing: stock is read from each ProductEntry's versions as it is asked for, and changes made
+ * after the snapshot opened are never seen. Purchases and restocks carry on while it is open, but
+ * the stock values it may read are kept until it is closed
+ * @author Julian Nicolai 101154233
+ */
+public class InventorySnapshot implements ProductStockContainer, AutoCloseable {
+
+    /**
+     * Inventory or ShardedInventory the snapshot reads
+     */
+    private final StockContainer inventory;
+
+    /**
+     * Clock of the inventory, the snapshot's version pinned on it
+     */
+    private final VersionClock clock;
+
+    /**
+     * Version of the inventory the snapshot reads at
+     */
+    private final long version;
+
+    /**
+     * Live entries of the products in the inventory at the version
+     */
+    private final List<ProductEntry> products;
+
+    /**
+     * Whether the snapshot has been closed
+     */
+    private volatile boolean closed;
+
+    /**
+     * Constructor for an InventorySnapshot, opened through StockContainer.openSnapshot
+     * @param inventory StockContainer to read
+     * @param clock VersionClock of the inventory
+     * @param version long version to read at, pinned on the clock
+     * @param products List of the live entries of the products at the version
+     */
+    InventorySnapshot(StockContainer inventory, VersionClock clock, long version, List<ProductEntry> products) {
+        this.inventory = inventory;
+        this.clock = clock;
+        this.version = version;
+        this.products = products;
+    }
+
+    /**
+     * Method to retrieve the version of the inventory the snapshot reads at
+     * @return long version
+     */
+    public long getVersion() { return version; }
+
+    /**
+     * Method to check the snapshot can still be read
+     */
+    private void checkOpen() { if (closed) throw new IllegalStateException("Inventory snapshot is closed."); }
+
+    /**
+     * Method for retrieving the stock of a Product at the snapshot's version
+     * @param product Product to retrieve
+     * @return amount of stock
+     */
+    @Override
+    public int getProductQuantity(Product product) {
+
+        checkOpen();
+        ProductEntry productEntry = inventory.getProductEntry(product);
+        int stock = productEntry != null ? productEntry.getStock(version, clock) : -1;
+
+        if (stock < 0) throw new ProductNotFoundException("The product requested does not exist.");
+        return stock;
+    }
+
+    /**
+     * Snapshots are read only
+     * @param product Product to add stock to
+     * @param numStock amount of stock to add
+     */
+    @Override
+    public void addProductQuantity(Product product, int numStock) {
+        throw new UnsupportedOperationException("Inventory snapshots are read only.");
+    }
+
+    /**
+     * Snapshots are read only
+     * @param product Product to remove stock from
+     * @param numStock amount of stock to remove
+     */
+    @Override
+    public void removeProductQuantity(Product product, int numStock) {
+        throw new UnsupportedOperationException("Inventory snapshots are read only.");
+    }
+
+    /**
+     * Method to retrieve the number of products in inventory at the snapshot's version
+     * @return int number of products
+     */
+    @Override
+    public int getNumOfProducts() { return products.size(); }
+
+    /**
+     * Method to check whether a product existed at the snapshot's version
+     * @param product Product to check
+     * @return boolean true if the product had an entry
+     */
+    @Override
+    public boolean containsProduct(Product product) {
+        checkOpen();
+        ProductEntry productEntry = inventory.getProductEntry(product);
+        return productEntry != null && productEntry.getStock(version, clock) >= 0;
+    }
+
+    /**
+     * Method to retrieve all product info at the snapshot's version; each element is a new
+     * ProductEntry holding the stock at the version, and can only be read while the snapshot is open
+     * @return List of all products and their stock, in the order they were added
+     */
+    @Override
+    public List<ProductEntry> getProductStockInfo() {
+        return new AbstractList<>() {
+            @Override
+            public ProductEntry get(int index) {
+                checkOpen();
+                ProductEntry productEntry = products.get(index);
+                return new ProductEntry(productEntry.getProduct(), productEntry.getStock(version, clock));
+            }
+
+            @Override
+            public int size() { return products.size(); }
+        };
+    }
+
+    /**
+     * Method to close the snapshot so the stock values only it reads can be dropped; does nothing
+     * if it is already closed
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        clock.unpin(version);
+    }
+
+}
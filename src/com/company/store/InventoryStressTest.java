@@ -0,0 +1,159 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Multi-threaded stress test of stock reservation. Buyer threads race to remove stock, one product
+ * or a batch of several at a time, until every product is sold out, while a watcher reads the
+ * stock and snapshots of the inventory. The test fails if the stock is ever seen below 0, or if
+ * the units sold of any product differ from the stock it started with: more would be an oversell,
+ * fewer a lost update
+ * <pre>
+ * java com.company.store.InventoryStressTest [threads] [products] [stock per product] [shards]
+ * </pre>
+ * @author Julian Nicolai 101154233
+ */
+public class InventoryStressTest {
+
+    /**
+     * Method to run the stress test
+     * @param args optional number of buyer threads (default 8), products (default 50), units of
+     *             stock per product (default 20000) and shards (default 1, unsharded)
+     */
+    public static void main(String[] args) throws Exception {
+
+        int numThreads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int numProducts = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int stock = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+        int shards = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+        StockContainer inventory = shards > 1 ? new ShardedInventory(shards) : new Inventory();
+        Product[] products = new Product[numProducts];
+        for (int i = 0; i < numProducts; i++) {
+            products[i] = new Product("Product " + i, 1, null, "Stress test product " + i);
+            inventory.addProductQuantity(products[i], stock);
+        }
+
+        AtomicLongArray sold = new AtomicLongArray(numProducts);
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService threads = Executors.newFixedThreadPool(numThreads + 1);
+        List<Future<?>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < numThreads; i++) {
+            long seed = i;
+            results.add(threads.submit(() -> buy(inventory, products, sold, seed)));
+        }
+        Future<?> watcher = threads.submit(() -> watch(inventory, products, done));
+
+        for (Future<?> result : results) result.get();
+        done.set(true);
+        watcher.get();
+        threads.shutdown();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long totalSold = 0;
+        for (int i = 0; i < numProducts; i++) {
+            int left = inventory.getProductQuantity(products[i]);
+            if (left != 0 || sold.get(i) != stock) {
+                throw new AssertionError(String.format("%s started with %d units, sold %d and has %d left.",
+                        products[i].getName(), stock, sold.get(i), left));
+            }
+            totalSold += sold.get(i);
+        }
+        System.out.printf("%d threads sold %d units of %d products in %.2f s; none oversold, none lost.%n",
+                numThreads, totalSold, numProducts, elapsed);
+    }
+
+    /**
+     * Method run by each buyer, removing stock until every product is sold out
+     * @param inventory StockContainer to buy from
+     * @param products Product[] of the inventory
+     * @param sold AtomicLongArray counting the units sold of each product
+     * @param seed long seed of the buyer's choices
+     * @return null, so the buyer can be submitted as a Callable
+     */
+    private static Void buy(StockContainer inventory, Product[] products, AtomicLongArray sold, long seed) {
+
+        Random random = new Random(seed);
+        int soldOut = 0;
+        while (soldOut < products.length) {
+            if (random.nextInt(4) == 0) {
+                Map<Product, Integer> batch = new HashMap<>();
+                for (int i = 0; i < 3; i++) batch.put(products[random.nextInt(products.length)], 1 + random.nextInt(3));
+                try {
+                    inventory.removeProductQuantities(batch);
+                    for (Map.Entry<Product, Integer> request : batch.entrySet()) {
+                        sold.addAndGet(indexOf(products, request.getKey()), request.getValue());
+                    }
+                } catch (InsufficientStockException err) {
+                    // another buyer got there first; nothing was taken
+                }
+            } else {
+                int product = random.nextInt(products.length);
+                int units = 1 + random.nextInt(3);
+                try {
+                    inventory.removeProductQuantity(products[product], units);
+                    sold.addAndGet(product, units);
+                } catch (InsufficientStockException err) {
+                    // fewer units than asked for are left; they are sold one at a time below
+                }
+            }
+
+            // a unit of the first product left is bought each round, so the last units are sold and the buyer ends
+            soldOut = 0;
+            for (int i = 0; i < products.length; i++) {
+                if (inventory.getProductQuantity(products[i]) > 0) {
+                    try {
+                        inventory.removeProductQuantity(products[i], 1);
+                        sold.incrementAndGet(i);
+                    } catch (InsufficientStockException err) {
+                        soldOut++;
+                    }
+                    break;
+                }
+                soldOut++;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method run by the watcher, reading stock and snapshots until the buyers are done
+     * @param inventory StockContainer to read
+     * @param products Product[] of the inventory
+     * @param done AtomicBoolean set once every buyer has finished
+     * @return null, so the watcher can be submitted as a Callable
+     */
+    private static Void watch(StockContainer inventory, Product[] products, AtomicBoolean done) {
+
+        while (!done.get()) {
+            for (Product product : products) {
+                int stock = inventory.getProductQuantity(product);
+                if (stock < 0) throw new AssertionError(product.getName() + " has " + stock + " units of stock.");
+            }
+            try (InventorySnapshot snapshot = inventory.openSnapshot()) {
+                for (ProductEntry productEntry : snapshot.getProductStockInfo()) {
+                    if (productEntry.getStock() < 0)
+                        throw new AssertionError(productEntry.getProduct().getName() + " has negative stock in a snapshot.");
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method to find a product's position
+     * @param products Product[] to search
+     * @param product Product to find
+     * @return int index of the product
+     */
+    private static int indexOf(Product[] products, Product product) {
+        for (int i = 0; ; i++) if (products[i] == product) return i;
+    }
+
+}
@@ -0,0 +1,158 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent histogram of latencies in nanoseconds with logarithmic buckets in the style of an HDR
+ * histogram: every power of two is split into 32 linear sub-buckets, so any recorded value is
+ * reported within about 3% using a fixed, small table. Buckets are striped LongAdder counters, so
+ * many threads can record at once without contending on a single cache line
+ * @author Julian Nicolai 101154233
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of bits of each power of two resolved into linear sub-buckets
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /**
+     * Number of linear sub-buckets per power of two
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Largest value tracked precisely, about 18 minutes in nanoseconds; larger values count as this
+     */
+    private static final long MAX_TRACKED = (1L << 40) - 1;
+
+    /**
+     * Count of recorded values in each bucket
+     */
+    private final LongAdder[] buckets;
+
+    /**
+     * Number of values recorded
+     */
+    private final LongAdder count;
+
+    /**
+     * Sum of all values recorded
+     */
+    private final LongAdder sum;
+
+    /**
+     * Largest value recorded
+     */
+    private final LongAccumulator max;
+
+    /**
+     * Constructor for an empty histogram
+     */
+    public LatencyHistogram() {
+        this.buckets = new LongAdder[bucketOf(MAX_TRACKED) + 1];
+        for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new LongAccumulator(Math::max, 0);
+    }
+
+    /**
+     * Method to find the bucket of a value. Values below 2 * SUB_BUCKETS have a bucket each; above
+     * that, each power of two is split into SUB_BUCKETS buckets
+     * @param value long value, 0 or more
+     * @return int bucket index
+     */
+    private static int bucketOf(long value) {
+
+        if (value < 2 * SUB_BUCKETS) return (int) value;
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * Method to find the largest value counted in a bucket
+     * @param bucket int bucket index
+     * @return long largest value of the bucket
+     */
+    private static long highestValueOf(int bucket) {
+
+        if (bucket < 2 * SUB_BUCKETS) return bucket;
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket - (long) shift * SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Method to record a latency
+     * @param nanos long latency in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+
+        long value = Math.min(Math.max(nanos, 0), MAX_TRACKED);
+
+        buckets[bucketOf(value)].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Method to retrieve the number of values recorded
+     * @return long count
+     */
+    public long getCount() { return count.sum(); }
+
+    /**
+     * Method to retrieve the mean of the values recorded
+     * @return double mean in nanoseconds, 0 if nothing was recorded
+     */
+    public double getMean() {
+        long recorded = count.sum();
+        return recorded == 0 ? 0 : (double) sum.sum() / recorded;
+    }
+
+    /**
+     * Method to retrieve the largest value recorded
+     * @return long maximum in nanoseconds
+     */
+    public long getMax() { return max.get(); }
+
+    /**
+     * Method to retrieve the value below which a given fraction of the recorded values fall. Values
+     * being recorded at the same time may or may not be included
+     * @param fraction double percentile as a fraction, such as 0.99
+     * @return long value in nanoseconds, to within the bucket precision; 0 if nothing was recorded
+     */
+    public long getPercentile(double fraction) {
+
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) total += counts[i] = buckets[i].sum();
+        if (total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(highestValueOf(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Method to describe the distribution in microseconds
+     * @return String count, mean, percentiles and maximum
+     */
+    public String summary() {
+        return String.format("n=%d mean=%.1f p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f us",
+                getCount(), getMean() / 1e3, getPercentile(0.50) / 1e3, getPercentile(0.90) / 1e3,
+                getPercentile(0.99) / 1e3, getPercentile(0.999) / 1e3, getMax() / 1e3);
+    }
+
+}
@@ -0,0 +1,273 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless load generator that drives a StoreManager with concurrent synthetic shoppers. Each
+ * shopper repeatedly browses products, fills a cart, and then either checks out or abandons the
+ * cart. Products are picked with Zipfian popularity, so a few hot products see most of the traffic
+ * as in a real store. Stock bought at checkout is restocked straight after, so the store stays in a
+ * steady state however long the run is. Latency is recorded per operation in LatencyHistograms
+ * <pre>
+ * java com.company.store.LoadGenerator [shoppers] [seconds] [products] [zipf exponent] [abandon rate]
+ * </pre>
+ * @author Julian Nicolai 101154233
+ */
+public class LoadGenerator {
+
+    /**
+     * Operations timed by the generator
+     */
+    public enum Operation {
+        /** Reading the stock of a product */
+        BROWSE,
+        /** Adding units of a product to a cart */
+        ADD_TO_CART,
+        /** Checking out a full cart */
+        CHECKOUT,
+        /** Returning every unit of an abandoned cart */
+        ABANDON,
+        /** Putting units bought at checkout back in stock */
+        RESTOCK
+    }
+
+    /**
+     * Store the shoppers use
+     */
+    private final StoreManager store;
+
+    /**
+     * Products that can be picked, most popular first
+     */
+    private final Product[] products;
+
+    /**
+     * Cumulative probability of picking each product, parallel to products
+     */
+    private final double[] popularity;
+
+    /**
+     * Number of concurrent shoppers
+     */
+    private final int shoppers;
+
+    /**
+     * Largest number of products a shopper puts in a cart
+     */
+    private final int maxCartSize;
+
+    /**
+     * Fraction of carts abandoned instead of checked out
+     */
+    private final double abandonRate;
+
+    /**
+     * Latency of each operation
+     */
+    private final EnumMap<Operation, LatencyHistogram> latencies;
+
+    /**
+     * Number of failed attempts of each operation, such as adding more units than are in stock
+     */
+    private final EnumMap<Operation, LongAdder> failures;
+
+    /**
+     * Constructor for a generator of the store's current products
+     * @param store StoreManager to drive
+     * @param shoppers int number of concurrent shoppers
+     * @param zipfExponent double skew of product popularity, 0 for uniform; around 1 for typical stores
+     * @param maxCartSize int largest number of products in a cart
+     * @param abandonRate double fraction of carts abandoned, from 0 to 1
+     */
+    public LoadGenerator(StoreManager store, int shoppers, double zipfExponent, int maxCartSize, double abandonRate) {
+
+        if (shoppers < 1) throw new IllegalArgumentException("Number of shoppers must be 1 or more.");
+        else if (maxCartSize < 1) throw new IllegalArgumentException("Cart size must be 1 or more.");
+        else if (abandonRate < 0 || abandonRate > 1) throw new IllegalArgumentException("Abandon rate must be between 0 and 1.");
+        else if (zipfExponent < 0) throw new IllegalArgumentException("Zipf exponent must be 0 or more.");
+
+        List<ProductEntry> entries = store.getProductStockInfo();
+        if (entries.isEmpty()) throw new IllegalArgumentException("The store has no products.");
+
+        this.store = store;
+        this.shoppers = shoppers;
+        this.maxCartSize = maxCartSize;
+        this.abandonRate = abandonRate;
+
+        // the product of rank k is picked with probability proportional to 1 / k^exponent
+        this.products = new Product[entries.size()];
+        this.popularity = new double[entries.size()];
+        double total = 0;
+        for (int i = 0; i < products.length; i++) {
+            products[i] = entries.get(i).getProduct();
+            total += 1 / Math.pow(i + 1, zipfExponent);
+            popularity[i] = total;
+        }
+        for (int i = 0; i < popularity.length; i++) popularity[i] /= total;
+
+        this.latencies = new EnumMap<>(Operation.class);
+        this.failures = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+            failures.put(operation, new LongAdder());
+        }
+    }
+
+    /**
+     * Method to run the shoppers for the given duration, returning once all have stopped
+     * @param duration Duration to run for
+     */
+    public void run(Duration duration) throws InterruptedException {
+
+        long deadline = System.nanoTime() + duration.toNanos();
+        ExecutorService threads = Executors.newFixedThreadPool(shoppers);
+        List<Future<?>> results = new ArrayList<>();
+
+        for (int i = 0; i < shoppers; i++) results.add(threads.submit(() -> shop(deadline)));
+
+        threads.shutdown();
+        try {
+            for (Future<?> result : results) result.get();
+        } catch (ExecutionException err) {
+            throw new IllegalStateException("A shopper failed unexpectedly.", err.getCause());
+        }
+    }
+
+    /**
+     * Method to run one shopper until the deadline
+     * @param deadline long System.nanoTime() value to stop at
+     */
+    private void shop(long deadline) {
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        while (System.nanoTime() - deadline < 0) {
+
+            ShoppingCart cart = new ShoppingCart(store);
+            Map<Product, Integer> added = new HashMap<>();
+            int cartSize = 1 + random.nextInt(maxCartSize);
+
+            for (int i = 0; i < cartSize; i++) {
+                Product product = pickProduct(random);
+
+                long start = System.nanoTime();
+                store.getProductQuantity(product);
+                latencies.get(Operation.BROWSE).record(System.nanoTime() - start);
+
+                int units = 1 + random.nextInt(3);
+                start = System.nanoTime();
+                try {
+                    cart.addProductQuantity(product, units);
+                    added.merge(product, units, Integer::sum);
+                } catch (IllegalArgumentException err) {
+                    // not enough stock, possibly because another shopper took it after this one browsed
+                    failures.get(Operation.ADD_TO_CART).increment();
+                }
+                latencies.get(Operation.ADD_TO_CART).record(System.nanoTime() - start);
+            }
+
+            if (added.isEmpty()) continue;
+
+            if (random.nextDouble() < abandonRate) {
+                long start = System.nanoTime();
+                for (Map.Entry<Product, Integer> units : added.entrySet()) cart.removeProductQuantity(units.getKey(), units.getValue());
+                latencies.get(Operation.ABANDON).record(System.nanoTime() - start);
+            } else {
+                long start = System.nanoTime();
+                cart.checkout();
+                latencies.get(Operation.CHECKOUT).record(System.nanoTime() - start);
+
+                start = System.nanoTime();
+                store.addProductQuantities(added);
+                latencies.get(Operation.RESTOCK).record(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Method to pick a product according to its popularity
+     * @param random ThreadLocalRandom of the shopper
+     * @return Product picked
+     */
+    private Product pickProduct(ThreadLocalRandom random) {
+        int index = Arrays.binarySearch(popularity, random.nextDouble());
+        return products[Math.min(index < 0 ? -index - 1 : index, products.length - 1)];
+    }
+
+    /**
+     * Method to retrieve the latencies of an operation
+     * @param operation Operation timed
+     * @return LatencyHistogram of the operation
+     */
+    public LatencyHistogram getLatencies(Operation operation) { return latencies.get(operation); }
+
+    /**
+     * Method to retrieve the number of failed attempts of an operation
+     * @param operation Operation attempted
+     * @return long number of failures
+     */
+    public long getFailures(Operation operation) { return failures.get(operation).sum(); }
+
+    /**
+     * Method to describe the throughput and latency of every operation
+     * @param elapsed Duration the generator ran for
+     * @return String report, one line per operation
+     */
+    public String report(Duration elapsed) {
+
+        double seconds = elapsed.toNanos() / 1e9;
+        StringBuilder report = new StringBuilder();
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latencies.get(operation);
+            report.append(String.format("%-12s %10.0f ops/s  failures=%-8d %s%n", operation,
+                    histogram.getCount() / seconds, getFailures(operation), histogram.summary()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Method to run the generator against the default store plus synthetic products
+     * @param args optional shoppers (default 16), seconds (10), extra products (1000), Zipf exponent
+     *             (1.0), abandon rate (0.3) and inventory shards (1, unsharded)
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        int shoppers = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int extraProducts = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        double zipfExponent = args.length > 3 ? Double.parseDouble(args[3]) : 1.0;
+        double abandonRate = args.length > 4 ? Double.parseDouble(args[4]) : 0.3;
+        int shards = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+
+        // inventory metrics are exposed through JMX, so the run can be watched with JConsole
+        StockContainer inventory = shards > 1 ? new ShardedInventory(shards) : new Inventory();
+        StoreManager store = new StoreManager(inventory, null, "load-generator");
+        Map<Product, Integer> restock = new HashMap<>();
+        for (ProductEntry productEntry : store.getProductStockInfo()) restock.put(productEntry.getProduct(), 1000);
+        store.addProductQuantities(restock);
+        for (int i = 0; i < extraProducts; i++) {
+            store.addProductQuantity(new Product("Product " + i, 1 + i % 100, null, "Synthetic product " + i), 1000);
+        }
+
+        LoadGenerator generator = new LoadGenerator(store, shoppers, zipfExponent, 5, abandonRate);
+        long start = System.nanoTime();
+        generator.run(Duration.ofSeconds(seconds));
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        System.out.printf("%d shoppers, %d products, %d shards, zipf %.2f, abandon %.0f%%, %.1f s%n", shoppers,
+                store.getNumOfProducts(), shards, zipfExponent, abandonRate * 100, elapsed.toNanos() / 1e9);
+        System.out.print(generator.report(elapsed));
+
+        System.out.println("inventory and cart operations:");
+        for (InstrumentedStockContainer.Operation operation : InstrumentedStockContainer.Operation.values()) {
+            OperationMetrics metrics = store.getInstrumentation().getMetrics(operation);
+            System.out.printf("%-28s errors=%-8d %s%n", operation, metrics.getErrors(), metrics.getLatencies().summary());
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.util.*;
+
+/**
+ * Benchmark of product lookups as the catalog grows. For each catalog size it times the
+ * getProductQuantity, addProductQuantity and removeProductQuantity calls of an Inventory and the
+ * getProductQuantity calls of a ShoppingCart holding the whole catalog, and prints the nanoseconds
+ * per call as a table: the scaling curve. Products are picked at random from HOT_PRODUCTS spread
+ * over the catalog, so every size touches the same amount of memory and stays in the processor's
+ * caches; only how the lookup finds a product can make a larger catalog slower. Lookups are indexed
+ * by product ID, so the benchmark fails if a call on the largest catalog costs more than MAX_GROWTH
+ * times what it costs on the smallest, where a scan of the list would grow as much as the catalog.
+ * For reference, the last column times getProductQuantity picking from the whole catalog, which
+ * rises as the catalog outgrows the caches. Each size is warmed up before it is timed
+ * <pre>
+ * java com.company.store.LookupScalingBenchmark [largest catalog size] [calls per measurement]
+ * </pre>
+ * @author Julian Nicolai 101154233
+ */
+public class LookupScalingBenchmark {
+
+    /**
+     * Largest factor the cost of a call may grow by from the smallest catalog to the largest
+     */
+    private static final double MAX_GROWTH = 3;
+
+    /**
+     * Number of products the timed calls pick from, whatever the size of the catalog
+     */
+    private static final int HOT_PRODUCTS = 64;
+
+    /**
+     * Number of times each measurement is repeated, the fastest being kept to filter out pauses
+     */
+    private static final int ROUNDS = 5;
+
+    /**
+     * Method to run the benchmark
+     * @param args optional largest catalog size (default 100000) and calls per measurement (default 200000)
+     */
+    public static void main(String[] args) {
+
+        int largestCatalog = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int calls = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+
+        System.out.printf("%10s %12s %12s %12s %12s %16s%n", "products", "get ns", "add ns", "remove ns", "cart get ns", "get all ns");
+        // a first, untimed run compiles the calls, so the smallest catalog is not timed while they are interpreted
+        measure(100, calls);
+        double[] smallest = null;
+        double[] largest = null;
+        for (int catalogSize = 100; catalogSize <= largestCatalog; catalogSize *= 10) {
+            largest = measure(catalogSize, calls);
+            if (smallest == null) smallest = largest;
+            System.out.printf("%10d %12.1f %12.1f %12.1f %12.1f %16.1f%n", catalogSize, largest[0], largest[1], largest[2],
+                    largest[3], largest[4]);
+        }
+
+        String[] operations = { "getProductQuantity", "addProductQuantity", "removeProductQuantity", "ShoppingCart.getProductQuantity" };
+        for (int i = 0; i < operations.length; i++) {
+            if (largest[i] > smallest[i] * MAX_GROWTH) {
+                throw new AssertionError(String.format("%s grew from %.1f ns to %.1f ns per call; lookups grow with the catalog.",
+                        operations[i], smallest[i], largest[i]));
+            }
+        }
+        System.out.println("Lookup cost does not follow catalog size.");
+    }
+
+    /**
+     * Method to time each operation on a catalog of the given size
+     * @param catalogSize int number of products
+     * @param calls int number of calls per measurement
+     * @return double[] nanoseconds per call of get, add, remove and cart get on the hot products,
+     *         and of get on the whole catalog
+     */
+    private static double[] measure(int catalogSize, int calls) {
+
+        StoreManager store = new StoreManager(new Inventory(), null);
+        Product[] products = new Product[catalogSize];
+        for (int i = 0; i < catalogSize; i++) {
+            products[i] = new Product("Product " + i, 1 + i % 100, null, "Benchmark product " + i);
+            store.addProductQuantity(products[i], 1_000_000);
+        }
+        ShoppingCart cart = new ShoppingCart(store);
+        for (Product product : products) cart.addProductQuantity(product, 1);
+
+        // products are picked in the same random order for every size, ahead of time so picking costs nothing
+        int[] picks = new int[calls];
+        int[] allPicks = new int[calls];
+        Random random = new Random(42);
+        for (int i = 0; i < calls; i++) {
+            picks[i] = (int) ((long) random.nextInt(HOT_PRODUCTS) * catalogSize / HOT_PRODUCTS);
+            allPicks[i] = random.nextInt(catalogSize);
+        }
+
+        double[] nanosPerCall = new double[5];
+        Arrays.fill(nanosPerCall, Double.MAX_VALUE);
+        long sink = 0;
+        // the first round warms up the calls on this catalog and is not kept
+        for (int round = 0; round <= ROUNDS; round++) {
+            if (round == 1) Arrays.fill(nanosPerCall, Double.MAX_VALUE);
+
+            long start = System.nanoTime();
+            for (int pick : picks) sink += store.getProductQuantity(products[pick]);
+            nanosPerCall[0] = Math.min(nanosPerCall[0], (System.nanoTime() - start) / (double) calls);
+
+            start = System.nanoTime();
+            for (int pick : picks) store.addProductQuantity(products[pick], 1);
+            nanosPerCall[1] = Math.min(nanosPerCall[1], (System.nanoTime() - start) / (double) calls);
+
+            start = System.nanoTime();
+            for (int pick : picks) store.removeProductQuantity(products[pick], 1);
+            nanosPerCall[2] = Math.min(nanosPerCall[2], (System.nanoTime() - start) / (double) calls);
+
+            start = System.nanoTime();
+            for (int pick : picks) sink += cart.getProductQuantity(products[pick]);
+            nanosPerCall[3] = Math.min(nanosPerCall[3], (System.nanoTime() - start) / (double) calls);
+
+            start = System.nanoTime();
+            for (int pick : allPicks) sink += store.getProductQuantity(products[pick]);
+            nanosPerCall[4] = Math.min(nanosPerCall[4], (System.nanoTime() - start) / (double) calls);
+        }
+
+        // the sums are used so the reads cannot be optimized away
+        if (sink == 0) throw new AssertionError("No stock was read.");
+        return nanosPerCall;
+    }
+
+}
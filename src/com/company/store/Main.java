@@ -1,11 +1,33 @@
 package com.company.store;
 
-import java.util.List;
-import java.util.Scanner;
+import java.net.InetSocketAddress;
+import java.time.Duration;
 
 public class Main {
 
+    /**
+     * Default port of the headless store service
+     */
+    private static final int DEFAULT_PORT = 8080;
+
+    /**
+     * Main entry point; starts the Swing store, or with --serve [port] [shards] a headless HTTP store
+     * service whose inventory is split into the given number of shards (default 1, unsharded)
+     * @param args command line arguments
+     */
     public static void main(String[] args) {
-       // main entry point is using StoreView.main()
+
+        if (args.length > 0 && args[0].equals("--serve")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+            int shards = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+            StockContainer inventory = shards > 1 ? new ShardedInventory(shards) : new Inventory();
+
+            // carts left open by clients give their stock back after 15 minutes; inventory metrics are exposed through JMX
+            StoreService service = new StoreService(new StoreManager(inventory, Duration.ofMinutes(15), "store"), new InetSocketAddress(port));
+            service.start();
+            System.out.println("Store service listening on port " + service.getPort());
+        } else {
+            StoreView.main(args);
+        }
     }
 }
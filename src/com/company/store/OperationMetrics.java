@@ -0,0 +1,95 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts, errors and latencies of one ProductStockContainer operation, recorded with striped
+ * counters so concurrent callers do not contend, and exposed through JMX
+ * @author Julian Nicolai 101154233
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+
+    /**
+     * Latency of every call, which also counts the calls
+     */
+    private final LatencyHistogram latencies;
+
+    /**
+     * Number of calls that threw an exception
+     */
+    private final LongAdder errors;
+
+    /**
+     * Number of calls that asked for more units than were held
+     */
+    private final LongAdder insufficientStock;
+
+    /**
+     * Number of calls that named a product that does not exist
+     */
+    private final LongAdder productNotFound;
+
+    /**
+     * Constructor for metrics with nothing recorded
+     */
+    public OperationMetrics() {
+        this.latencies = new LatencyHistogram();
+        this.errors = new LongAdder();
+        this.insufficientStock = new LongAdder();
+        this.productNotFound = new LongAdder();
+    }
+
+    /**
+     * Method to record a call
+     * @param nanos long latency of the call in nanoseconds
+     */
+    public void record(long nanos) { latencies.record(nanos); }
+
+    /**
+     * Method to record a call that threw an exception
+     * @param nanos long latency of the call in nanoseconds
+     * @param err RuntimeException thrown
+     */
+    public void recordError(long nanos, RuntimeException err) {
+        latencies.record(nanos);
+        errors.increment();
+        if (err instanceof InsufficientStockException) insufficientStock.increment();
+        else if (err instanceof ProductNotFoundException) productNotFound.increment();
+    }
+
+    /**
+     * Method to retrieve the latency histogram of the operation
+     * @return LatencyHistogram of every call
+     */
+    public LatencyHistogram getLatencies() { return latencies; }
+
+    @Override
+    public long getCount() { return latencies.getCount(); }
+
+    @Override
+    public long getErrors() { return errors.sum(); }
+
+    @Override
+    public long getInsufficientStock() { return insufficientStock.sum(); }
+
+    @Override
+    public long getProductNotFound() { return productNotFound.sum(); }
+
+    @Override
+    public double getMeanMicros() { return latencies.getMean() / 1e3; }
+
+    @Override
+    public double getP50Micros() { return latencies.getPercentile(0.50) / 1e3; }
+
+    @Override
+    public double getP99Micros() { return latencies.getPercentile(0.99) / 1e3; }
+
+    @Override
+    public double getP999Micros() { return latencies.getPercentile(0.999) / 1e3; }
+
+    @Override
+    public double getMaxMicros() { return latencies.getMax() / 1e3; }
+
+}
@@ -0,0 +1,65 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+/**
+ * JMX management interface of the metrics of one ProductStockContainer operation
+ * @author Julian Nicolai 101154233
+ */
+public interface OperationMetricsMBean {
+
+    /**
+     * Method to retrieve the number of calls of the operation
+     * @return long number of calls, including failed ones
+     */
+    long getCount();
+
+    /**
+     * Method to retrieve the number of calls that threw an exception
+     * @return long number of errors
+     */
+    long getErrors();
+
+    /**
+     * Method to retrieve the number of calls that asked for more units than were held
+     * @return long number of oversell attempts
+     */
+    long getInsufficientStock();
+
+    /**
+     * Method to retrieve the number of calls that named a product that does not exist
+     * @return long number of missing products
+     */
+    long getProductNotFound();
+
+    /**
+     * Method to retrieve the mean latency of the operation
+     * @return double mean latency in microseconds
+     */
+    double getMeanMicros();
+
+    /**
+     * Method to retrieve the median latency of the operation
+     * @return double 50th percentile latency in microseconds
+     */
+    double getP50Micros();
+
+    /**
+     * Method to retrieve the 99th percentile latency of the operation
+     * @return double 99th percentile latency in microseconds
+     */
+    double getP99Micros();
+
+    /**
+     * Method to retrieve the 99.9th percentile latency of the operation
+     * @return double 99.9th percentile latency in microseconds
+     */
+    double getP999Micros();
+
+    /**
+     * Method to retrieve the largest latency of the operation
+     * @return double maximum latency in microseconds
+     */
+    double getMaxMicros();
+
+}
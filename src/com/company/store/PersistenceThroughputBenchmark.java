@@ -0,0 +1,131 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark of the write throughput of a persistent Inventory at different fsync batch sizes. For
+ * each batch size a fresh inventory is written to by a number of threads, each change waiting for
+ * its log record to be durable, and the writes per second, fsyncs per second and records per fsync
+ * are printed as a table. Every run then checks its log: no fsync may have covered more records
+ * than the batch size, and the inventory recovered from the log must hold exactly the stock the
+ * live inventory held when it was closed
+ * <pre>
+ * java com.company.store.PersistenceThroughputBenchmark [fsync batch sizes] [threads] [seconds]
+ * </pre>
+ * where fsync batch sizes is a comma separated list, such as 1,8,64
+ * @author Julian Nicolai 101154233
+ */
+public class PersistenceThroughputBenchmark {
+
+    /**
+     * Number of products written to
+     */
+    private static final int NUM_PRODUCTS = 100;
+
+    /**
+     * Method to run the benchmark
+     * @param args optional fsync batch sizes (default 1,8,64,512), writer threads (default 16) and
+     *             seconds per batch size (default 2)
+     */
+    public static void main(String[] args) throws Exception {
+
+        int[] batchSizes = Arrays.stream((args.length > 0 ? args[0] : "1,8,64,512").split(","))
+                .mapToInt(size -> Integer.parseInt(size.trim())).toArray();
+        int numThreads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        long nanos = TimeUnit.SECONDS.toNanos(args.length > 2 ? Integer.parseInt(args[2]) : 2);
+
+        System.out.printf("%12s %8s %12s %12s %14s%n", "fsync batch", "threads", "writes/s", "fsyncs/s", "records/fsync");
+        for (int batchSize : batchSizes) {
+            Path directory = Files.createTempDirectory("inventory-benchmark");
+            try {
+                run(directory, batchSize, numThreads, nanos);
+            } finally {
+                try (Stream<Path> files = Files.list(directory)) {
+                    for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+                }
+                Files.delete(directory);
+            }
+        }
+        System.out.println("Every run recovered the stock it wrote.");
+    }
+
+    /**
+     * Method to write to a fresh persistent inventory for the given time, report its throughput
+     * and check what it logged
+     * @param directory Path of the empty directory to persist to
+     * @param batchSize int largest number of records per fsync
+     * @param numThreads int number of writer threads
+     * @param nanos long nanoseconds to write for
+     */
+    private static void run(Path directory, int batchSize, int numThreads, long nanos) throws Exception {
+
+        InventoryPersistence persistence = new InventoryPersistence(directory, batchSize);
+        // snapshots are left out of the measurement, so every write goes through the log
+        Inventory inventory = new Inventory(persistence, Duration.ofDays(1));
+        Product[] products = new Product[NUM_PRODUCTS];
+        for (int i = 0; i < NUM_PRODUCTS; i++) {
+            products[i] = new Product("Product " + i, 1, null, "Benchmark product " + i);
+            inventory.addProductQuantity(products[i], 1_000_000);
+        }
+        long recordsBefore = persistence.getRecordsWritten();
+        long fsyncsBefore = persistence.getFsyncs();
+
+        ExecutorService threads = Executors.newFixedThreadPool(numThreads);
+        List<Future<Long>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        long end = start + nanos;
+        for (int i = 0; i < numThreads; i++) {
+            long seed = i;
+            results.add(threads.submit(() -> {
+                // each unit removed is added back, so no product runs out however fast the log is
+                Random random = new Random(seed);
+                long writes = 0;
+                while (System.nanoTime() - end < 0) {
+                    Product product = products[random.nextInt(NUM_PRODUCTS)];
+                    inventory.removeProductQuantity(product, 1);
+                    inventory.addProductQuantity(product, 1);
+                    writes += 2;
+                }
+                return writes;
+            }));
+        }
+
+        long writes = 0;
+        for (Future<Long> result : results) writes += result.get();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        threads.shutdown();
+
+        long records = persistence.getRecordsWritten() - recordsBefore;
+        long fsyncs = persistence.getFsyncs() - fsyncsBefore;
+        System.out.printf("%12d %8d %12.0f %12.0f %14.1f%n", batchSize, numThreads, writes / elapsed, fsyncs / elapsed,
+                records / (double) Math.max(fsyncs, 1));
+
+        if (records < writes) throw new AssertionError(writes + " writes were acknowledged but only " + records + " were logged.");
+        if (records > fsyncs * (long) batchSize)
+            throw new AssertionError(records + " records were made durable by " + fsyncs + " fsyncs of at most " + batchSize + ".");
+
+        Map<UUID, Integer> liveStock = new HashMap<>();
+        for (ProductEntry productEntry : inventory.getProductStockInfo()) liveStock.put(productEntry.getProduct().getID(), productEntry.getStock());
+        inventory.close();
+
+        InventoryPersistence recovery = new InventoryPersistence(directory, batchSize);
+        List<ProductEntry> recovered = recovery.recover();
+        recovery.close();
+        if (recovered.size() != liveStock.size())
+            throw new AssertionError(recovered.size() + " products were recovered of " + liveStock.size() + ".");
+        for (ProductEntry productEntry : recovered) {
+            Integer stock = liveStock.get(productEntry.getProduct().getID());
+            if (stock == null || stock != productEntry.getStock()) {
+                throw new AssertionError(String.format("%s recovered with %d units, but had %s.",
+                        productEntry.getProduct().getName(), productEntry.getStock(), stock));
+            }
+        }
+    }
+
+}
@@ -2,6 +2,8 @@
 
 package com.company.store;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.UUID;
 
 /**
@@ -25,6 +27,11 @@ public class Product {
      */
     private final double price;
 
+    /**
+     * Exact price of product in cents, rounded from the double price
+     */
+    private final long priceCents;
+
     /**
      * Image icon location, relative to root (project) folder
      */
@@ -46,9 +53,31 @@ public class Product {
      * @param price Price of the product
      */
     public Product(String name, double price, String image, String description) {
-        this.ID = UUID.randomUUID();
+        this(UUID.randomUUID(), name, price, image, description);
+    }
+
+    /**
+     * Product constructor for an existing product whose ID is already known, such as one being restored from disk
+     * @param ID ID of the product
+     * @param name Name of the product
+     * @param price Price of the product
+     * @param image Image location of the product
+     * @param description Description of the product
+     * @throws IllegalArgumentException if the price is not a number, infinite, or too large to count in cents
+     */
+    public Product(UUID ID, String name, double price, String image, String description) {
+
+        // checked before converting, which would otherwise fail with a NumberFormatException or ArithmeticException
+        if (!Double.isFinite(price)) {
+            throw new IllegalArgumentException("Price must be a finite number.");
+        } else if (Math.abs(price) >= Long.MAX_VALUE / 100) {
+            throw new IllegalArgumentException("Price is too large.");
+        }
+
+        this.ID = ID;
         this.name = name;
         this.price = price;
+        this.priceCents = BigDecimal.valueOf(price).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
         this.image = image;
         this.description = description;
     }
@@ -71,6 +100,18 @@ public class Product {
      */
     public double getPrice() { return this.price; }
 
+    /**
+     * Get method to retrieve the exact price of a product in cents
+     * @return long price in cents
+     */
+    public long getPriceCents() { return this.priceCents; }
+
+    /**
+     * Get method to retrieve the exact price of a product
+     * @return BigDecimal price with two decimal places
+     */
+    public BigDecimal getExactPrice() { return BigDecimal.valueOf(this.priceCents, 2); }
+
     /**
      * Get method to retrieve location of product image
      * @return String image file location
@@ -2,21 +2,265 @@
 
 package com.company.store;
 
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
 /**
- * Generic container class to associate a product with its stock
+ * Generic container class to associate a product with its stock. Inside an Inventory the stock is
+ * versioned so snapshots can read it as it was: while no snapshot is open a change is one
+ * compare-and-set of the latest stock in place, and while one is open each change links a new
+ * stock value in front of the ones older snapshots may still read. No reader or writer ever waits
+ * for another thread to finish a change
  * @author Julian Nicolai 101154233
  */
 public class ProductEntry {
 
+    /**
+     * Version of a change that is staged in a batch and may still be abandoned
+     */
+    static final long STAGING = Long.MAX_VALUE;
+
+    /**
+     * Version of a staged change that was abandoned, newer than any snapshot can read
+     */
+    static final long ABORTED = Long.MAX_VALUE - 1;
+
+    /**
+     * Version of a change that is made but not yet stamped with the version it is read at
+     */
+    static final long COMMITTED = Long.MAX_VALUE - 2;
+
+    /**
+     * Bit of a stock value's state set once the value may no longer change in place
+     */
+    private static final long SEALED = 1L << 32;
+
+    /**
+     * Compare-and-set access to the latest stock
+     */
+    private static final AtomicReferenceFieldUpdater<ProductEntry, StockVersion> LATEST =
+            AtomicReferenceFieldUpdater.newUpdater(ProductEntry.class, StockVersion.class, "latest");
+
+    /**
+     * Compare-and-set access to a stock value's state
+     */
+    private static final AtomicLongFieldUpdater<StockVersion> STATE = AtomicLongFieldUpdater.newUpdater(StockVersion.class, "state");
+
+    /**
+     * Compare-and-set access to the version of a commit
+     */
+    private static final AtomicLongFieldUpdater<Commit> VERSION = AtomicLongFieldUpdater.newUpdater(Commit.class, "version");
+
     /**
      * Product of ProductEntry
      */
     private final Product product;
 
     /**
-     * Amount of stock of product
+     * Latest stock of the product, replaced with compare-and-set so it can be reserved and released concurrently
+     */
+    private volatile StockVersion latest;
+
+    /**
+     * Stock below which the product is low and should be reordered, 0 for no threshold
      */
-    private int stock;
+    private volatile int reorderThreshold;
+
+    /**
+     * Whether the entry is in its inventory's low-stock set; only changed holding the entry
+     */
+    private volatile boolean lowStock;
+
+    /**
+     * Change, or batch of changes, made visible to snapshots at one version. Any thread that finds
+     * a committed change without a version stamps it, so none waits for the thread that made it
+     */
+    static class Commit {
+
+        /**
+         * Version the change is read at, or STAGING, ABORTED or COMMITTED until it has one
+         */
+        volatile long version;
+
+        /**
+         * Constructor for a Commit
+         * @param version long starting version, STAGING or COMMITTED
+         */
+        Commit(long version) { this.version = version; }
+
+        /**
+         * Method to give a committed change the current version; versions are stamped on the
+         * stock values below it first, so they never decrease from the latest stock back
+         * @param clock VersionClock of the inventory
+         */
+        void stamp(VersionClock clock) { VERSION.compareAndSet(this, COMMITTED, clock.current()); }
+    }
+
+    /**
+     * Stock of the product from one version on, linked to the stock it replaced
+     */
+    private static final class StockVersion extends Commit {
+
+        /**
+         * Commit the stock is made visible by: the stock value itself, or the batch it is part of
+         */
+        private final Commit commit;
+
+        /**
+         * Amount of stock in the low 32 bits, with SEALED once it may no longer change in place
+         */
+        private volatile long state;
+
+        /**
+         * Stock before this version, null once no snapshot can read it
+         */
+        private volatile StockVersion previous;
+
+        /**
+         * Constructor for a StockVersion made visible on its own
+         * @param stock integer amount of stock
+         * @param version long version of the stock, COMMITTED to stamp it later
+         * @param previous StockVersion replaced, may be null
+         */
+        private StockVersion(int stock, long version, StockVersion previous) {
+            super(version);
+            this.commit = this;
+            this.state = stock;
+            this.previous = previous;
+        }
+
+        /**
+         * Constructor for a StockVersion staged in a batch
+         * @param stock integer amount of stock
+         * @param batch Batch the stock is part of
+         * @param previous StockVersion replaced
+         */
+        private StockVersion(int stock, Batch batch, StockVersion previous) {
+            super(STAGING);
+            this.commit = batch;
+            this.state = stock;
+            this.previous = previous;
+        }
+
+        /**
+         * Method to stop the stock changing in place, if it is still the amount read
+         * @param state long state the amount was read from
+         * @return true if the stock is sealed at that amount, false if it changed and must be read again
+         */
+        private boolean seal(long state) { return (state & SEALED) != 0 || STATE.compareAndSet(this, state, state | SEALED); }
+
+        /**
+         * Method to seal the stock and retrieve it
+         * @return integer amount of stock, which no longer changes
+         */
+        private int sealedStock() {
+            while (true) {
+                long state = this.state;
+                if (seal(state)) return (int) state;
+            }
+        }
+
+        @Override
+        void stamp(VersionClock clock) {
+            StockVersion below = previous;
+            if (below != null && below.commit.version == COMMITTED) below.commit.stamp(clock);
+            super.stamp(clock);
+        }
+    }
+
+    /**
+     * Changes to several entries that are staged one by one, out of sight of readers, and then
+     * committed together so snapshots see all of them or none. Another change that meets a staged
+     * stock value aborts its batch rather than wait for it, and the batch is staged again
+     */
+    static final class Batch extends Commit {
+
+        /**
+         * Entries with a change staged in the batch
+         */
+        private final ProductEntry[] entries;
+
+        /**
+         * Stock values staged in the batch, parallel to entries
+         */
+        private final StockVersion[] staged;
+
+        /**
+         * Number of changes staged so far
+         */
+        private int numStaged;
+
+        /**
+         * Constructor for an empty Batch
+         * @param size int largest number of changes to stage
+         */
+        Batch(int size) {
+            super(STAGING);
+            this.entries = new ProductEntry[size];
+            this.staged = new StockVersion[size];
+        }
+
+        /**
+         * Method to stage a change to an entry, unseen until the batch is committed
+         * @param productEntry ProductEntry to change, not yet changed by the batch
+         * @param change integer units added (positive) or taken (negative)
+         * @return true if the change was staged, false if the stock was insufficient
+         */
+        boolean stage(ProductEntry productEntry, int change) {
+            while (true) {
+                StockVersion current = productEntry.currentStock();
+                if (current == null) continue;
+
+                long state = current.state;
+                int stock = (int) state;
+                if ((long) stock + change < 0) return false;
+
+                StockVersion changed = new StockVersion(stock + change, this, current);
+                if (current.seal(state) && LATEST.compareAndSet(productEntry, current, changed)) {
+                    entries[numStaged] = productEntry;
+                    staged[numStaged++] = changed;
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Method to make every staged change visible at once and stamp them with the current version
+         * @param clock VersionClock of the inventory
+         * @return true if committed, false if another change aborted the batch first and it must be staged again
+         */
+        boolean commit(VersionClock clock) {
+
+            if (!VERSION.compareAndSet(this, STAGING, COMMITTED)) {
+                abort();
+                return false;
+            }
+
+            stamp(clock);
+            // read only after stamping, see ProductEntry.prune
+            long pinned = clock.getOldestPinnedVersion();
+            for (int i = 0; i < numStaged; i++) entries[i].prune(version, pinned);
+            return true;
+        }
+
+        /**
+         * Method to abandon every staged change, unless the batch is already committed
+         */
+        void abort() {
+            VERSION.compareAndSet(this, STAGING, ABORTED);
+            if (version != ABORTED) return;
+            for (int i = 0; i < numStaged; i++) LATEST.compareAndSet(entries[i], staged[i], staged[i].previous);
+        }
+
+        @Override
+        void stamp(VersionClock clock) {
+            for (int i = 0; i < numStaged; i++) {
+                StockVersion below = staged[i].previous;
+                if (below != null && below.commit.version == COMMITTED) below.commit.stamp(clock);
+            }
+            super.stamp(clock);
+        }
+    }
 
     /**
      * Default constructor for a null product entry
@@ -28,9 +272,17 @@ public class ProductEntry {
      * @param product Product to make an entry for
      * @param stock integer stock to add
      */
-    public ProductEntry(Product product, int stock) {
+    public ProductEntry(Product product, int stock) { this(product, stock, 0); }
+
+    /**
+     * Constructor method for a ProductEntry whose stock starts at a version
+     * @param product Product to make an entry for
+     * @param stock integer stock to add
+     * @param version long version of the stock, COMMITTED to stamp it once the entry is listed
+     */
+    ProductEntry(Product product, int stock, long version) {
         this.product = product;
-        this.stock = stock;
+        this.latest = new StockVersion(stock, version, null);
     }
 
     /**
@@ -40,15 +292,135 @@ public class ProductEntry {
     public Product getProduct() { return this.product; }
 
     /**
-     * Method to retrieve the stock value
+     * Method to retrieve the stock value, leaving out any change staged in a batch
      * @return integer stock available
      */
-    public int getStock() { return this.stock; }
+    public int getStock() {
+        StockVersion stockVersion = latest;
+        while (stockVersion.commit.version >= ABORTED) stockVersion = stockVersion.previous;
+        return (int) stockVersion.state;
+    }
+
+    /**
+     * Method to retrieve the stock value as it was at a version. A change that is made but not yet
+     * stamped is stamped here, newer than the version, rather than waited for; staged changes are passed over
+     * @param version long version to read, pinned by an open snapshot
+     * @param clock VersionClock of the inventory
+     * @return integer stock at the version, -1 if the entry did not exist yet
+     */
+    int getStock(long version, VersionClock clock) {
+        for (StockVersion stockVersion = latest; stockVersion != null; stockVersion = stockVersion.previous) {
+            Commit commit = stockVersion.commit;
+            if (commit.version == COMMITTED) commit.stamp(clock);
+            if (commit.version > version) continue;
+
+            // sealed so a writer that checked for open snapshots before this one was pinned cannot change it in place
+            return stockVersion.sealedStock();
+        }
+        return -1;
+    }
 
     /**
-     * Sets the stock of the product
+     * Sets the stock of the product in place, dropping its older versions; only for entries outside an Inventory
      * @param stock integer new stock to set
      */
-    public void setStock(int stock) { this.stock = stock; }
+    public void setStock(int stock) {
+        StockVersion stockVersion = this.latest;
+        stockVersion.state = stock;
+        stockVersion.previous = null;
+    }
+
+    /**
+     * Method to retrieve the reorder threshold
+     * @return integer stock below which the product is low, 0 for no threshold
+     */
+    public int getReorderThreshold() { return reorderThreshold; }
+
+    /**
+     * Method to set the reorder threshold, kept up to date with the low-stock set by the inventory
+     * @param reorderThreshold integer stock below which the product is low, 0 for no threshold
+     */
+    void setReorderThreshold(int reorderThreshold) { this.reorderThreshold = reorderThreshold; }
+
+    /**
+     * Method to check whether the entry is in its inventory's low-stock set
+     * @return boolean true if it is in the set
+     */
+    boolean isLowStock() { return lowStock; }
+
+    /**
+     * Method to record whether the entry is in its inventory's low-stock set, called holding the entry
+     * @param lowStock boolean true if it is in the set
+     */
+    void setLowStock(boolean lowStock) { this.lowStock = lowStock; }
+
+    /**
+     * Method to change the stock with compare-and-set (no locking). While no snapshot is open the
+     * latest stock is changed in place, allocating nothing; otherwise the new stock is linked in
+     * front of it and stamped with the current version straight after
+     * @param change integer units added (positive) or taken (negative)
+     * @param clock VersionClock of the inventory
+     * @return true if the stock was changed, false if it was insufficient
+     */
+    boolean changeStock(int change, VersionClock clock) {
+        while (true) {
+            StockVersion current = currentStock();
+            if (current == null) continue;
+
+            long state = current.state;
+            int stock = (int) state;
+            if ((long) stock + change < 0) return false;
+
+            if ((state & SEALED) == 0 && current.previous == null && current.commit.version != COMMITTED
+                    && clock.getOldestPinnedVersion() == Long.MAX_VALUE) {
+                if (STATE.compareAndSet(current, state, stock + change)) return true;
+                continue;
+            }
+
+            StockVersion changed = new StockVersion(stock + change, COMMITTED, current);
+            if (current.seal(state) && LATEST.compareAndSet(this, current, changed)) {
+                changed.stamp(clock);
+                // read only after stamping, see prune
+                prune(changed.version, clock.getOldestPinnedVersion());
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Method to stamp a new entry's stock once the entry is listed
+     * @param clock VersionClock of the inventory
+     */
+    void stamp(VersionClock clock) { latest.commit.stamp(clock); }
+
+    /**
+     * Method to retrieve the latest stock that is not staged, aborting the batch of a staged change
+     * found in front of it
+     * @return StockVersion latest stock, null if a staged change was found and the caller must look again
+     */
+    private StockVersion currentStock() {
+        StockVersion current = latest;
+        Commit commit = current.commit;
+        if (commit.version < ABORTED) return current;
+
+        // staged changes are never built on, their batch may still be abandoned
+        if (commit.version == STAGING) VERSION.compareAndSet(commit, STAGING, ABORTED);
+        if (commit.version == ABORTED) LATEST.compareAndSet(this, current, current.previous);
+        return null;
+    }
+
+    /**
+     * Method to drop the stock values no snapshot can read anymore
+     * @param version long version just stamped on the entry
+     * @param oldestPinnedVersion long oldest version an open snapshot may read, read after stamping
+     */
+    void prune(long version, long oldestPinnedVersion) {
+        // keeping the newest stock at or below both is enough: a snapshot pinned after oldestPinnedVersion
+        // was read still reads at or above the version just stamped
+        long keepVersion = Math.min(version, oldestPinnedVersion);
+        StockVersion stockVersion = latest;
+        while (stockVersion != null && stockVersion.commit.version > keepVersion) stockVersion = stockVersion.previous;
+        if (stockVersion != null) stockVersion.previous = null;
+    }
 
 }
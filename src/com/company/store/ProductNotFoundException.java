@@ -0,0 +1,22 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+/**
+ * Exception thrown when a product asked for does not exist in a ProductStockContainer
+ * @author Julian Nicolai 101154233
+ */
+public class ProductNotFoundException extends IllegalArgumentException {
+
+    /**
+     * Serialization version of the exception, as exceptions are Serializable
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor for a ProductNotFoundException
+     * @param message String detail message
+     */
+    public ProductNotFoundException(String message) { super(message); }
+
+}
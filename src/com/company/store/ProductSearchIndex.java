@@ -0,0 +1,503 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory search index over the names and descriptions of a catalog's products. Words are kept
+ * in a prefix trie whose nodes hold the sorted list of products containing the word (an inverted
+ * index), so whole words are found by walking the trie and the last, partly typed word of a query
+ * by walking to its prefix. Products are numbered in the order they are added, and results are
+ * returned in that order; a search stops as soon as it has enough results. The index is built by the
+ * first search, so a store whose products are read lazily, such as from a CatalogFile, does not
+ * read every name and description before it can serve. The index listens to the Inventory and only
+ * queues each new product, keeping the inventory's writers free of the index's lock; queued
+ * products are indexed when the next search runs
+ * @author Julian Nicolai 101154233
+ */
+public class ProductSearchIndex implements InventoryListener {
+
+    /**
+     * Container whose products are indexed
+     */
+    private final ProductStockContainer inventory;
+
+    /**
+     * Products added since the index was last brought up to date
+     */
+    private final ConcurrentLinkedQueue<Product> pending;
+
+    /**
+     * Whether the index has been built; it is built by the first search
+     */
+    private volatile boolean built;
+
+    /**
+     * Root of the trie of words
+     */
+    private final Node root;
+
+    /**
+     * Products by number
+     */
+    private final List<Product> products;
+
+    /**
+     * Number of each indexed product by ID
+     */
+    private final Map<UUID, Integer> productNumbers;
+
+    /**
+     * Words of each product, by product number, as word numbers
+     */
+    private final List<int[]> productWords;
+
+    /**
+     * Words by word number
+     */
+    private final List<String> words;
+
+    /**
+     * Number of distinct words summed over every product
+     */
+    private long wordRefs;
+
+    /**
+     * Lock letting searches run together while queued products are indexed one search at a time
+     */
+    private final ReadWriteLock lock;
+
+    /**
+     * Node of the word trie
+     */
+    private static class Node {
+
+        /**
+         * Characters leading to each child, sorted
+         */
+        private char[] keys = new char[0];
+
+        /**
+         * Children, parallel to keys
+         */
+        private Node[] children = new Node[0];
+
+        /**
+         * Numbers of the products containing the word ending at this node, null if no word ends here
+         */
+        private PostingList postings;
+
+        /**
+         * Number of the word ending at this node, -1 if no word ends here
+         */
+        private int word = -1;
+
+        /**
+         * Method to find a child
+         * @param key char leading to the child
+         * @return Node child, null if there is none
+         */
+        private Node child(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? children[index] : null;
+        }
+
+        /**
+         * Method to find a child, adding it if there is none
+         * @param key char leading to the child
+         * @return Node child
+         */
+        private Node addChild(char key) {
+
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) return children[index];
+
+            int insert = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insert);
+            System.arraycopy(children, 0, newChildren, 0, insert);
+            System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+            System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+            newKeys[insert] = key;
+            newChildren[insert] = new Node();
+
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[insert];
+        }
+    }
+
+    /**
+     * Sorted list of product numbers, growing as products are added
+     */
+    private static class PostingList {
+
+        /**
+         * Product numbers in ascending order
+         */
+        private int[] numbers = new int[2];
+
+        /**
+         * Number of product numbers in the list
+         */
+        private int size;
+
+        /**
+         * Method to add a product, numbered after every product already in the list
+         * @param number int product number
+         */
+        private void add(int number) {
+            if (size > 0 && numbers[size - 1] == number) return;
+            if (size == numbers.length) numbers = Arrays.copyOf(numbers, size * 2);
+            numbers[size++] = number;
+        }
+
+        /**
+         * Method to check whether the list holds a product
+         * @param number int product number
+         * @return boolean true if the product is in the list
+         */
+        private boolean contains(int number) { return Arrays.binarySearch(numbers, 0, size, number) >= 0; }
+    }
+
+    /**
+     * Constructor for the index of a container; register it as a listener of the container so the
+     * index follows its new products
+     * @param inventory ProductStockContainer to index
+     */
+    public ProductSearchIndex(ProductStockContainer inventory) {
+        this.inventory = inventory;
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.root = new Node();
+        this.products = new ArrayList<>();
+        this.productNumbers = new HashMap<>();
+        this.productWords = new ArrayList<>();
+        this.words = new ArrayList<>();
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Method to split text into lower case words of letters and digits
+     * @param text String to split, may be null
+     * @return List of words in order
+     */
+    private static List<String> tokenize(String text) {
+
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Method to note a product to be indexed by the next search
+     * @param product Product to index
+     */
+    public void add(Product product) { pending.add(product); }
+
+    @Override
+    public void productAdded(Product product) { add(product); }
+
+    @Override
+    public void stockChanged(Product product) { }
+
+    /**
+     * Method to bring the index up to date with the container, building it on first use
+     */
+    private void refresh() {
+
+        if (built && pending.isEmpty()) return;
+
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                for (ProductEntry productEntry : inventory.getProductStockInfo()) index(productEntry.getProduct());
+                built = true;
+            }
+            for (Product product = pending.poll(); product != null; product = pending.poll()) index(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Method to index a product's name and description, holding the write lock; products already
+     * indexed are ignored, as a product added while the index is built is both listed and queued
+     * @param product Product to index
+     */
+    private void index(Product product) {
+
+        if (productNumbers.containsKey(product.getID())) return;
+
+        List<String> tokens = tokenize(product.getName());
+        tokens.addAll(tokenize(product.getDescription()));
+
+        int number = products.size();
+        products.add(product);
+        productNumbers.put(product.getID(), number);
+
+        int[] wordNumbers = new int[tokens.size()];
+        int distinct = 0;
+        for (String token : tokens) {
+            Node node = root;
+            for (int i = 0; i < token.length(); i++) node = node.addChild(token.charAt(i));
+            if (node.postings == null) {
+                node.postings = new PostingList();
+                node.word = words.size();
+                words.add(token);
+            }
+            // a repeated word is already listed against this product
+            if (node.postings.size == 0 || node.postings.numbers[node.postings.size - 1] != number) {
+                wordNumbers[distinct++] = node.word;
+            }
+            node.postings.add(number);
+        }
+        productWords.add(Arrays.copyOf(wordNumbers, distinct));
+        wordRefs += distinct;
+    }
+
+    /**
+     * Method to find the products containing every word of a query. The last word matches any word
+     * it is the start of, unless the query ends with a space, so results narrow as the query is typed
+     * @param query String words to find, in any case
+     * @param limit int largest number of results
+     * @return List of matching Products in the order they were added, empty if the query has no words
+     */
+    public List<Product> search(String query, int limit) {
+
+        List<String> tokens = tokenize(query);
+        List<Product> results = new ArrayList<>();
+        if (tokens.isEmpty() || limit < 1) return results;
+
+        boolean lastIsPrefix = Character.isLetterOrDigit(query.charAt(query.length() - 1));
+        String prefix = lastIsPrefix ? tokens.remove(tokens.size() - 1) : null;
+
+        refresh();
+        lock.readLock().lock();
+        try {
+            // every whole word must be present; the rarest one gives the fewest candidates to check
+            List<PostingList> required = new ArrayList<>(tokens.size());
+            for (String token : tokens) {
+                Node node = find(token);
+                if (node == null || node.postings == null) return results;
+                required.add(node.postings);
+            }
+            required.sort(Comparator.comparingInt(postings -> postings.size));
+
+            Node prefixNode = prefix != null ? find(prefix) : null;
+            if (prefix != null && prefixNode == null) return results;
+
+            List<PostingList> prefixLists = prefixNode != null ? listsBelow(prefixNode) : List.of();
+            long prefixTotal = 0;
+            for (PostingList list : prefixLists) prefixTotal += list.size;
+
+            if (required.isEmpty()) {
+                // a short prefix matches most products through many words, so checking products in
+                // order finds the first results sooner than merging every word's list
+                if (scanCost(prefixTotal, limit) < mergeCost(prefixLists.size(), prefixTotal, limit)) {
+                    scanPrefixMatches(prefix, limit, results);
+                } else {
+                    mergePrefixMatches(prefixLists, required, 0, limit, results);
+                }
+                return results;
+            }
+
+            // walk whichever side has fewer products, checking each against the other
+            if (prefixNode != null && prefixTotal < required.get(0).size) {
+                mergePrefixMatches(prefixLists, required, 0, limit, results);
+                return results;
+            }
+
+            PostingList candidates = required.get(0);
+            for (int i = 0; i < candidates.size && results.size() < limit; i++) {
+                int number = candidates.numbers[i];
+                if (containsAll(required, 1, number) && (prefix == null || hasWordStartingWith(number, prefix))) {
+                    results.add(products.get(number));
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Method to list indexed words starting with a prefix, for type-ahead suggestions
+     * @param prefix String start of the words, in any case
+     * @param limit int largest number of words
+     * @return List of words in alphabetical order
+     */
+    public List<String> suggest(String prefix, int limit) {
+
+        List<String> suggestions = new ArrayList<>();
+        String folded = prefix.toLowerCase(Locale.ROOT);
+
+        refresh();
+        lock.readLock().lock();
+        try {
+            Node node = find(folded);
+            if (node == null || limit < 1) return suggestions;
+
+            // depth first in key order visits words alphabetically
+            ArrayDeque<Node> stack = new ArrayDeque<>();
+            stack.push(node);
+            while (!stack.isEmpty() && suggestions.size() < limit) {
+                Node current = stack.pop();
+                if (current.word >= 0) suggestions.add(words.get(current.word));
+                for (int i = current.children.length - 1; i >= 0; i--) stack.push(current.children[i]);
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Method to retrieve the number of indexed products
+     * @return int number of products
+     */
+    public int getNumOfProducts() {
+        refresh();
+        lock.readLock().lock();
+        try {
+            return products.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Method to walk the trie to the node of a word or prefix
+     * @param text String lower case word or prefix
+     * @return Node reached, null if no indexed word starts with the text
+     */
+    private Node find(String text) {
+        Node node = root;
+        for (int i = 0; i < text.length() && node != null; i++) node = node.child(text.charAt(i));
+        return node;
+    }
+
+    /**
+     * Method to check whether a product is in every posting list from a given one on
+     * @param required List of PostingLists
+     * @param from int index of the first list to check
+     * @param number int product number
+     * @return boolean true if every list checked holds the product
+     */
+    private static boolean containsAll(List<PostingList> required, int from, int number) {
+        for (int i = from; i < required.size(); i++) if (!required.get(i).contains(number)) return false;
+        return true;
+    }
+
+    /**
+     * Method to check whether a product has a word starting with a prefix
+     * @param number int product number
+     * @param prefix String lower case prefix
+     * @return boolean true if one of the product's words starts with the prefix
+     */
+    private boolean hasWordStartingWith(int number, String prefix) {
+        for (int word : productWords.get(number)) if (words.get(word).startsWith(prefix)) return true;
+        return false;
+    }
+
+    /**
+     * Method to estimate the work of finding prefix matches by checking products in order
+     * @param prefixTotal long number of products listed against words with the prefix
+     * @param limit int largest number of results
+     * @return double estimated number of words compared
+     */
+    private double scanCost(long prefixTotal, int limit) {
+        if (prefixTotal == 0) return Double.MAX_VALUE;
+        double scanned = Math.min(products.size(), (double) limit * products.size() / prefixTotal);
+        return scanned * wordRefs / Math.max(1, products.size());
+    }
+
+    /**
+     * Method to estimate the work of finding prefix matches by merging the words' posting lists
+     * @param lists int number of words with the prefix
+     * @param prefixTotal long number of products listed against those words
+     * @param limit int largest number of results
+     * @return double estimated number of steps, weighted against the word comparisons of a scan
+     */
+    private static double mergeCost(int lists, long prefixTotal, int limit) {
+        // heap steps cost several times a word comparison
+        return 4.0 * (lists + Math.min(prefixTotal, limit) * (1 + 31 - Integer.numberOfLeadingZeros(lists)));
+    }
+
+    /**
+     * Method to collect the first products with a word starting with a prefix by checking the
+     * products in order
+     * @param prefix String lower case prefix
+     * @param limit int largest number of results
+     * @param results List to add the matching Products to
+     */
+    private void scanPrefixMatches(String prefix, int limit, List<Product> results) {
+        for (int number = 0; number < products.size() && results.size() < limit; number++) {
+            if (hasWordStartingWith(number, prefix)) results.add(products.get(number));
+        }
+    }
+
+    /**
+     * Method to gather the posting lists of every word below a trie node
+     * @param node Node of the prefix
+     * @return List of PostingLists of the words starting with the prefix
+     */
+    private static List<PostingList> listsBelow(Node node) {
+
+        List<PostingList> lists = new ArrayList<>();
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            Node current = stack.pop();
+            if (current.postings != null) lists.add(current.postings);
+            for (Node child : current.children) stack.push(child);
+        }
+        return lists;
+    }
+
+    /**
+     * Method to collect the first products containing any word of a prefix and every required
+     * word, merging the prefix words' posting lists in product order
+     * @param lists List of PostingLists of the words starting with the prefix
+     * @param required List of PostingLists every result must be in
+     * @param from int index of the first required list to check
+     * @param limit int largest number of results
+     * @param results List to add the matching Products to
+     */
+    private void mergePrefixMatches(List<PostingList> lists, List<PostingList> required, int from, int limit, List<Product> results) {
+
+        // heap of {next product number, list index, position}, smallest product number first
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, lists.size()), Comparator.comparingInt(head -> head[0]));
+        for (int i = 0; i < lists.size(); i++) heads.add(new int[] { lists.get(i).numbers[0], i, 0 });
+
+        int last = -1;
+        while (!heads.isEmpty() && results.size() < limit) {
+            int[] head = heads.poll();
+            if (head[0] != last) {
+                last = head[0];
+                if (containsAll(required, from, last)) results.add(products.get(last));
+            }
+            PostingList list = lists.get(head[1]);
+            if (++head[2] < list.size) {
+                head[0] = list.numbers[head[2]];
+                heads.add(head);
+            }
+        }
+    }
+
+}
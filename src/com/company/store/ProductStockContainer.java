@@ -37,6 +37,13 @@ public interface ProductStockContainer {
      */
     int getNumOfProducts();
 
+    /**
+     * Method to check whether a product has an entry in container
+     * @param product Product to check
+     * @return boolean true if the product exists in container
+     */
+    boolean containsProduct(Product product);
+
     /**
      * Method to retrieve all product info in container
      * @return List of all products and their associated stock
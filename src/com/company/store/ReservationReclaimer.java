@@ -0,0 +1,174 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Returns the stock held by abandoned ShoppingCarts to the store once their reservation expires.
+ * Each cart with units in it has at most one pending reservation in a DelayQueue, so a sweep only
+ * touches carts that are actually due rather than scanning every cart
+ * @author Julian Nicolai 101154233
+ */
+public class ReservationReclaimer {
+
+    /**
+     * Maximum number of expired reservations handled per batch
+     */
+    private static final int BATCH_SIZE = 256;
+
+    /**
+     * Time in nanoseconds a cart keeps its stock after its last addition
+     */
+    private final long ttlNanos;
+
+    /**
+     * Pending reservations, ordered by deadline
+     */
+    private final DelayQueue<Reservation> reservations;
+
+    /**
+     * Background thread that runs the sweeps
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Number of carts that have had their stock reclaimed
+     */
+    private final LongAdder reclaimedCarts;
+
+    /**
+     * Number of units returned to the store
+     */
+    private final LongAdder reclaimedUnits;
+
+    /**
+     * Number of sweeps that have run
+     */
+    private final LongAdder sweeps;
+
+    /**
+     * Pending reservation of a single cart
+     */
+    private static class Reservation implements Delayed {
+
+        /**
+         * Cart holding the reserved stock
+         */
+        private final ShoppingCart cart;
+
+        /**
+         * System.nanoTime() value the reservation is due at
+         */
+        private final long deadline;
+
+        /**
+         * Constructor for a Reservation
+         * @param cart ShoppingCart holding the stock
+         * @param deadline long nanoTime deadline
+         */
+        private Reservation(ShoppingCart cart, long deadline) {
+            this.cart = cart;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) { return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS); }
+
+        @Override
+        public int compareTo(Delayed other) { return Long.compare(deadline, ((Reservation) other).deadline); }
+    }
+
+    /**
+     * Constructor that starts the background sweep
+     * @param ttl Duration a cart keeps its stock after its last addition
+     */
+    public ReservationReclaimer(Duration ttl) {
+
+        if (ttl.isNegative() || ttl.isZero())
+            throw new IllegalArgumentException("Reservation time must be greater than 0.");
+
+        this.ttlNanos = ttl.toNanos();
+        this.reservations = new DelayQueue<>();
+        this.reclaimedCarts = new LongAdder();
+        this.reclaimedUnits = new LongAdder();
+        this.sweeps = new LongAdder();
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reservation-reclaimer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // sweep a few times per reservation period, but at most every 50ms and at least every second
+        long periodMillis = Math.min(Math.max(ttl.toMillis() / 10, 50), 1000);
+        scheduler.scheduleWithFixedDelay(this::sweep, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Method to retrieve the reservation time
+     * @return long reservation time in nanoseconds
+     */
+    public long getTtlNanos() { return ttlNanos; }
+
+    /**
+     * Method to queue a reservation for a cart; the cart ensures there is only one per cart
+     * @param cart ShoppingCart holding stock
+     * @param deadline long System.nanoTime() value the reservation expires at
+     */
+    void schedule(ShoppingCart cart, long deadline) { reservations.add(new Reservation(cart, deadline)); }
+
+    /**
+     * Method to reclaim the stock of every cart whose reservation has expired, in batches
+     */
+    public void sweep() {
+
+        List<Reservation> due = new ArrayList<>(BATCH_SIZE);
+        while (reservations.drainTo(due, BATCH_SIZE) > 0) {
+            long now = System.nanoTime();
+            for (Reservation reservation : due) {
+                // the cart decides if it is really expired, as it may have been used since being queued
+                int units = reservation.cart.reclaimIfExpired(now);
+                if (units > 0) {
+                    reclaimedCarts.increment();
+                    reclaimedUnits.add(units);
+                }
+            }
+            due.clear();
+        }
+        sweeps.increment();
+    }
+
+    /**
+     * Method to retrieve the number of carts that have been reclaimed
+     * @return long number of carts
+     */
+    public long getReclaimedCarts() { return reclaimedCarts.sum(); }
+
+    /**
+     * Method to retrieve the number of units returned to the store
+     * @return long number of units
+     */
+    public long getReclaimedUnits() { return reclaimedUnits.sum(); }
+
+    /**
+     * Method to retrieve the number of carts currently holding a reservation
+     * @return int number of pending reservations
+     */
+    public int getPendingReservations() { return reservations.size(); }
+
+    /**
+     * Method to retrieve the number of sweeps run so far
+     * @return long number of sweeps
+     */
+    public long getSweeps() { return sweeps.sum(); }
+
+    /**
+     * Method to stop the background sweep
+     */
+    public void shutdown() { scheduler.shutdownNow(); }
+
+}
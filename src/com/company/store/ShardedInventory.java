@@ -0,0 +1,211 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.util.*;
+
+/**
+ * Inventory split into independent shards by product ID, for stores where a single Inventory would
+ * be one point of contention. Each shard is an Inventory of its own, with its own product index,
+ * low-stock set and listener list; the shards share only the version clock, which writers only
+ * read, and the list of products, which is only written when a product is added. A ShardedInventory
+ * is a StockContainer like Inventory, so it can be used anywhere one is, StoreManager included, and
+ * routes each call to the shards of its products.
+ * <p>
+ * A batch is all or nothing whichever shards it spans: stock is reserved on every product of the
+ * batch before any change is made, and the changes are made together, so snapshots and listeners
+ * never see part of a batch
+ * @author Julian Nicolai 101154233
+ */
+public class ShardedInventory implements StockContainer {
+
+    /**
+     * Shards of the inventory
+     */
+    private final Inventory[] shards;
+
+    /**
+     * Clock shared by the shards, so a snapshot reads every shard at one version
+     */
+    private final VersionClock clock;
+
+    /**
+     * Entries of every shard in the order they were added, shared by the shards so the whole
+     * inventory lists stably and snapshots list products in the same order
+     */
+    private final AppendOnlyList<ProductEntry> productList = new AppendOnlyList<>();
+
+    /**
+     * ShardedInventory constructor initializes default products
+     * @param numShards int number of shards, such as the number of processors
+     */
+    public ShardedInventory(int numShards) {
+
+        if (numShards < 1) throw new IllegalArgumentException("Number of shards must be 1 or more.");
+
+        this.clock = new VersionClock();
+        this.shards = new Inventory[numShards];
+        for (int i = 0; i < numShards; i++) shards[i] = new Inventory(clock, productList);
+
+        Inventory.addDefaultProducts(this);
+    }
+
+    /**
+     * Method to find the shard a product ID belongs to
+     * @param id UUID of the product
+     * @return int index of the shard
+     */
+    private int shardIndex(UUID id) {
+        long bits = (id.getMostSignificantBits() ^ id.getLeastSignificantBits()) * 0x9E3779B97F4A7C15L;
+        return (int) (((bits >>> 32) * shards.length) >>> 32);
+    }
+
+    /**
+     * Method to find the shard a product belongs to
+     * @param product Product to find
+     * @return Inventory shard of the product
+     */
+    private Inventory shardOf(Product product) { return shards[shardIndex(product.getID())]; }
+
+    /**
+     * Method to retrieve the number of shards
+     * @return int number of shards
+     */
+    public int getNumOfShards() { return shards.length; }
+
+    @Override
+    public ProductEntry getProductEntry(Product product) { return shardOf(product).getProductEntry(product); }
+
+    @Override
+    public Product getProduct(UUID id) { return shards[shardIndex(id)].getProduct(id); }
+
+    @Override
+    public void addProductQuantity(Product product, int numStock) { shardOf(product).addProductQuantity(product, numStock); }
+
+    @Override
+    public void removeProductQuantity(Product product, int numStock) { shardOf(product).removeProductQuantity(product, numStock); }
+
+    /**
+     * Method to add stock to many products at once, adding any products that do not exist yet
+     * @param products map of each Product to the amount of stock to add
+     */
+    @Override
+    public void addProductQuantities(Map<Product, Integer> products) {
+
+        // validate every request before adding any stock so a bad request adds nothing
+        for (int numStock : products.values()) {
+            if (numStock < 0) throw new IllegalArgumentException("Number of units must be 0 or more.");
+        }
+
+        Inventory.StagedChange[] changes = new Inventory.StagedChange[products.size()];
+        int numChanges = 0;
+
+        // new products are added on their own, then the existing products are restocked at one version
+        for (Map.Entry<Product, Integer> request : products.entrySet()) {
+            ProductEntry productEntry = getProductEntry(request.getKey());
+            if (productEntry == null) {
+                addProductQuantity(request.getKey(), request.getValue());
+            } else {
+                changes[numChanges++] = new Inventory.StagedChange(productEntry, request.getValue());
+            }
+        }
+        applyAll(changes, numChanges);
+    }
+
+    /**
+     * Method to remove stock from many products at once; either every product has its stock
+     * removed or, if any product is missing or short on stock, none do
+     * @param products map of each Product to the amount of stock to remove
+     */
+    @Override
+    public void removeProductQuantities(Map<Product, Integer> products) {
+
+        Inventory.StagedChange[] changes = new Inventory.StagedChange[products.size()];
+        int numChanges = 0;
+
+        // resolve and validate every request before reserving anything
+        for (Map.Entry<Product, Integer> request : products.entrySet()) {
+            ProductEntry productEntry = getProductEntry(request.getKey());
+            int numStock = request.getValue();
+
+            if (numStock < 1) {
+                throw new IllegalArgumentException("Number of units must be 1 or more.");
+            } else if (productEntry == null) {
+                throw new ProductNotFoundException("The product requested does not exist.");
+            }
+
+            changes[numChanges++] = new Inventory.StagedChange(productEntry, -numStock);
+        }
+        applyAll(changes, numChanges);
+    }
+
+    /**
+     * Method to make a batch of changes across shards all at once; every change is staged, reserving
+     * its stock, before the batch is committed, so either every change is made or, on the first
+     * shortage, none are
+     * @param changes array of StagedChange's, sorted and merged in place
+     * @param numChanges number of changes in the array
+     */
+    private void applyAll(Inventory.StagedChange[] changes, int numChanges) {
+
+        int numMerged = Inventory.merge(changes, numChanges);
+
+        // a batch is only aborted by another change meeting it while staged, and is then staged again
+        ProductEntry.Batch batch;
+        do {
+            batch = Inventory.stageAll(changes, numMerged);
+        } while (!batch.commit(clock));
+
+        for (int i = 0; i < numMerged; i++) {
+            ProductEntry productEntry = changes[i].productEntry();
+            shardOf(productEntry.getProduct()).stockChanged(productEntry);
+        }
+    }
+
+    @Override
+    public int getProductQuantity(Product product) { return shardOf(product).getProductQuantity(product); }
+
+    @Override
+    public int getNumOfProducts() { return productList.size(); }
+
+    @Override
+    public boolean containsProduct(Product product) { return shardOf(product).containsProduct(product); }
+
+    @Override
+    public List<ProductEntry> getProductStockInfo() { return Collections.unmodifiableList(productList); }
+
+    @Override
+    public void addListener(InventoryListener listener) { for (Inventory shard : shards) shard.addListener(listener); }
+
+    @Override
+    public void removeListener(InventoryListener listener) { for (Inventory shard : shards) shard.removeListener(listener); }
+
+    @Override
+    public void setReorderThreshold(Product product, int threshold) { shardOf(product).setReorderThreshold(product, threshold); }
+
+    @Override
+    public int getReorderThreshold(Product product) { return shardOf(product).getReorderThreshold(product); }
+
+    /**
+     * Method to list the products below their reorder threshold across every shard
+     * @return List of the low-stock ProductEntry's, a copy in product ID order
+     */
+    @Override
+    public List<ProductEntry> getLowStockProducts() {
+        List<ProductEntry> lowStockProducts = new ArrayList<>();
+        for (Inventory shard : shards) lowStockProducts.addAll(shard.getLowStockProducts());
+        lowStockProducts.sort(Comparator.comparing(productEntry -> productEntry.getProduct().getID()));
+        return lowStockProducts;
+    }
+
+    /**
+     * Method to open a consistent read-only view of every shard at one version; the snapshot must be closed
+     * @return InventorySnapshot of the inventory, listing the products in the order they were added
+     */
+    @Override
+    public InventorySnapshot openSnapshot() {
+        long snapshotVersion = clock.pin();
+        return new InventorySnapshot(this, clock, snapshotVersion, Inventory.listedAt(productList, snapshotVersion, clock));
+    }
+
+}
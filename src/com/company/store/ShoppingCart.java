@@ -5,7 +5,8 @@ package com.company.store;
 import java.util.*;
 
 /**
- * Manages the shopping cart of a StoreView user
+ * Manages the shopping cart of a StoreView user. If the store has a ReservationReclaimer, stock
+ * taken by the cart is returned to the store once the cart goes unused for the reservation time
  * @author Julian Nicolai 101154233
  */
 public class ShoppingCart implements ProductStockContainer {
@@ -15,57 +16,241 @@ public class ShoppingCart implements ProductStockContainer {
      */
     private final List<ProductEntry> cartList;
 
+    /**
+     * Index of the cart's ProductEntry's by product ID for constant time lookup
+     */
+    private final Map<UUID, ProductEntry> cartIndex;
+
     /**
      * StoreManager the shopping cart is using
      */
     private final StoreManager store;
 
+    /**
+     * Instrumentation of the store the cart records its operations in, null if they are not recorded
+     */
+    private final InstrumentedStockContainer instrumentation;
+
+    /**
+     * Running total of the cart in cents, kept up to date on every change
+     */
+    private long totalCents;
+
+    /**
+     * System.nanoTime() value the cart's reservation expires at, only used with a ReservationReclaimer
+     */
+    private long reservationDeadline;
+
+    /**
+     * Whether the cart currently has a reservation queued with the ReservationReclaimer
+     */
+    private boolean reservationQueued;
+
+    /**
+     * Whether the cart's stock was returned to the store by the ReservationReclaimer since units
+     * were last added
+     */
+    private boolean reclaimed;
+
+    /**
+     * Listener notified when the cart's reservation expires, null if none
+     */
+    private final CartExpiryListener expiryListener;
+
     /**
      * Constructor to initialize the cart list
      */
-    public ShoppingCart(StoreManager store) {
+    public ShoppingCart(StoreManager store) { this(store, null); }
+
+    /**
+     * Constructor for a cart whose expiry is reported. If the store has a ReservationReclaimer the
+     * cart's reservation starts now, so a cart that is never used also expires
+     * @param store StoreManager the cart takes stock from
+     * @param expiryListener CartExpiryListener notified each time the cart's reservation expires, null if none
+     */
+    public ShoppingCart(StoreManager store, CartExpiryListener expiryListener) {
         this.cartList = new ArrayList<>();
+        this.cartIndex = new HashMap<>();
         this.store = store;
+        this.instrumentation = store.getInstrumentation();
+        this.expiryListener = expiryListener;
+        if (expiryListener != null) {
+            synchronized (this) {
+                renewReservation();
+            }
+        }
     }
 
     /**
      * Method used to retrieve a ProductEntry object via the Product's ID
      * @param product Product to retrieve
-     * @return ProductEntry object of ID, returns null product if doesn't exist
+     * @return ProductEntry object of ID, returns null if doesn't exist
+     */
+    private ProductEntry getProductEntry(Product product) { return cartIndex.get(product.getID()); }
+
+    /**
+     * Method used to add products to a users ShoppingCart
+     * @param product product to be added to cart
+     * @param numStock number of units to be bought
+     * @throws IllegalArgumentException if the cart total would be too large to count in cents
      */
-    private ProductEntry getProductEntry(Product product) {
+    @Override
+    public synchronized void addProductQuantity(Product product, int numStock) {
 
-        ProductEntry matchingProductEntry = new ProductEntry(); // starting state is no matching ProductEntry (null product)
-        UUID id = product.getID();
+        long start = startOperation();
+        try {
+            // the total is checked before any stock is taken from the store
+            long newTotal = changeTotal(totalCents, product, numStock, true);
+            store.removeProductQuantity(product, numStock);
+            addCartUnits(product, numStock);
+            totalCents = newTotal;
+            renewReservation();
+        } catch (RuntimeException err) {
+            recordError(InstrumentedStockContainer.Operation.CART_ADD_PRODUCT_QUANTITY, start, err);
+            throw err;
+        }
+        record(InstrumentedStockContainer.Operation.CART_ADD_PRODUCT_QUANTITY, start);
 
-        if (cartList.size() == 0) return matchingProductEntry; // if empty, return null ProductEntry for no match
+    }
 
-        // search for matching product entry
-        for (ProductEntry currentProductEntry : cartList) {
-            if (currentProductEntry.getProduct().getID().equals(id)) {
-                matchingProductEntry = currentProductEntry;
-                break;
+    /**
+     * Method used to add many products to a users ShoppingCart at once; the stock for every
+     * product is reserved from the store together, so either all are added or none are
+     * @param products map of each Product to the number of units to be bought
+     * @throws IllegalArgumentException if the cart total would be too large to count in cents
+     */
+    public synchronized void addProductQuantities(Map<Product, Integer> products) {
+
+        long start = startOperation();
+        try {
+            long newTotal = totalCents;
+            for (Map.Entry<Product, Integer> request : products.entrySet()) {
+                newTotal = changeTotal(newTotal, request.getKey(), request.getValue(), true);
+            }
+            store.removeProductQuantities(products);
+
+            for (Map.Entry<Product, Integer> request : products.entrySet()) {
+                addCartUnits(request.getKey(), request.getValue());
             }
+            totalCents = newTotal;
+            renewReservation();
+        } catch (RuntimeException err) {
+            recordError(InstrumentedStockContainer.Operation.CART_ADD_PRODUCT_QUANTITIES, start, err);
+            throw err;
         }
+        record(InstrumentedStockContainer.Operation.CART_ADD_PRODUCT_QUANTITIES, start);
 
-        // return match, if nothing is found remains null product
-        return matchingProductEntry;
+    }
 
+    /**
+     * Method to read the clock at the start of an operation, if operations are recorded
+     * @return long System.nanoTime() value, 0 if operations are not recorded
+     */
+    private long startOperation() { return instrumentation != null ? System.nanoTime() : 0; }
+
+    /**
+     * Method to record an operation of the cart that completed
+     * @param operation InstrumentedStockContainer.Operation completed
+     * @param start long value returned by startOperation when the operation began
+     */
+    private void record(InstrumentedStockContainer.Operation operation, long start) {
+        if (instrumentation != null) instrumentation.getMetrics(operation).record(System.nanoTime() - start);
     }
 
     /**
-     * Method used to add products to a users ShoppingCart
-     * @param product product to be added to cart
-     * @param numStock number of units to be bought
+     * Method to record an operation of the cart that threw an exception
+     * @param operation InstrumentedStockContainer.Operation that failed
+     * @param start long value returned by startOperation when the operation began
+     * @param err RuntimeException thrown
      */
-    @Override
-    public void addProductQuantity(Product product, int numStock) {
+    private void recordError(InstrumentedStockContainer.Operation operation, long start, RuntimeException err) {
+        if (instrumentation != null) instrumentation.getMetrics(operation).recordError(System.nanoTime() - start, err);
+    }
+
+    /**
+     * Method to record units already taken from the store in the cart
+     * @param product product the units are for
+     * @param numStock number of units to record
+     */
+    private void addCartUnits(Product product, int numStock) {
 
         ProductEntry productEntry = getProductEntry(product);
 
-        store.removeProductQuantity(product, numStock);
-        if (productEntry.getProduct().getName() == null) cartList.add(new ProductEntry(product, numStock));
-        else productEntry.setStock(productEntry.getStock() + numStock);
+        if (productEntry == null) {
+            ProductEntry newProductEntry = new ProductEntry(product, numStock);
+            cartList.add(newProductEntry);
+            cartIndex.put(product.getID(), newProductEntry);
+        } else productEntry.setStock(productEntry.getStock() + numStock);
+        reclaimed = false;
+
+    }
+
+    /**
+     * Method to work out the cart total after adding or removing units of a product
+     * @param total long cart total in cents
+     * @param product Product the units are of
+     * @param numStock int number of units
+     * @param adding boolean true if the units are added, false if removed
+     * @return long new total in cents
+     * @throws IllegalArgumentException if the total would be too large to count in cents
+     */
+    private static long changeTotal(long total, Product product, int numStock, boolean adding) {
+        try {
+            long cents = Math.multiplyExact(product.getPriceCents(), (long) numStock);
+            return adding ? Math.addExact(total, cents) : Math.subtractExact(total, cents);
+        } catch (ArithmeticException err) {
+            throw new IllegalArgumentException("The cart total would be too large to count in cents.");
+        }
+    }
+
+    /**
+     * Method to push back the expiry of the cart's reservation after it has been used
+     */
+    private void renewReservation() {
+
+        ReservationReclaimer reclaimer = store.getReservationReclaimer();
+        if (reclaimer == null) return;
+
+        reservationDeadline = System.nanoTime() + reclaimer.getTtlNanos();
+        if (!reservationQueued) {
+            reservationQueued = true;
+            reclaimer.schedule(this, reservationDeadline);
+        }
+
+    }
+
+    /**
+     * Method used by the ReservationReclaimer when the cart's queued reservation comes due; if the
+     * cart has not been used since, returns all units to the store and reports the expiry to the
+     * cart's listener, otherwise requeues it
+     * @param now long current System.nanoTime() value
+     * @return number of units returned to the store
+     */
+    synchronized int reclaimIfExpired(long now) {
+
+        if (cartList.isEmpty() && expiryListener == null) {
+            reservationQueued = false;
+            return 0;
+        } else if (reservationDeadline - now > 0) {
+            store.getReservationReclaimer().schedule(this, reservationDeadline);
+            return 0;
+        }
+
+        int totalUnits = 0;
+        if (!cartList.isEmpty()) {
+            Map<Product, Integer> units = new LinkedHashMap<>();
+            for (ProductEntry productEntry : cartList) {
+                units.put(productEntry.getProduct(), productEntry.getStock());
+                totalUnits += productEntry.getStock();
+            }
+
+            store.addProductQuantities(units);
+            clear();
+            reclaimed = true;
+        }
+        reservationQueued = false;
+        if (expiryListener != null) expiryListener.cartExpired(this);
+        return totalUnits;
 
     }
 
@@ -75,19 +260,30 @@ public class ShoppingCart implements ProductStockContainer {
      * @param numStock number of units to be removed
      */
     @Override
-    public void removeProductQuantity(Product product, int numStock) {
+    public synchronized void removeProductQuantity(Product product, int numStock) {
 
-        ProductEntry productEntry = getProductEntry(product);
+        long start = startOperation();
+        try {
+            ProductEntry productEntry = getProductEntry(product);
 
-        if (productEntry.getProduct().getName() == null) {
-            throw new IllegalArgumentException("Product specified does not exist in your cart.");
-        } else if (productEntry.getStock() < numStock) {
-            throw new IllegalArgumentException("Cannot remove more items than exist in your cart.");
-        } else {
-            store.addProductQuantity(product, numStock);
-            if (productEntry.getStock() - numStock == 0) cartList.remove(productEntry);
-            else productEntry.setStock(productEntry.getStock() - numStock);
+            if (productEntry == null) {
+                throw new ProductNotFoundException("Product specified does not exist in your cart.");
+            } else if (productEntry.getStock() < numStock) {
+                throw new InsufficientStockException("Cannot remove more items than exist in your cart.");
+            } else {
+                long newTotal = changeTotal(totalCents, product, numStock, false);
+                store.addProductQuantity(product, numStock);
+                if (productEntry.getStock() - numStock == 0) {
+                    cartList.remove(productEntry);
+                    cartIndex.remove(product.getID());
+                } else productEntry.setStock(productEntry.getStock() - numStock);
+                totalCents = newTotal;
+            }
+        } catch (RuntimeException err) {
+            recordError(InstrumentedStockContainer.Operation.CART_REMOVE_PRODUCT_QUANTITY, start, err);
+            throw err;
         }
+        record(InstrumentedStockContainer.Operation.CART_REMOVE_PRODUCT_QUANTITY, start);
 
     }
 
@@ -97,12 +293,12 @@ public class ShoppingCart implements ProductStockContainer {
      * @return number of units in cart
      */
     @Override
-    public int getProductQuantity(Product product) {
+    public synchronized int getProductQuantity(Product product) {
 
         ProductEntry productEntry = getProductEntry(product);
 
-        if (productEntry.getProduct().getName() == null)
-            throw new IllegalArgumentException("The product requested does not exist.");
+        if (productEntry == null)
+            throw new ProductNotFoundException("The product requested does not exist.");
 
         return productEntry.getStock();
     }
@@ -112,18 +308,60 @@ public class ShoppingCart implements ProductStockContainer {
      * @return int number of products
      */
     @Override
-    public int getNumOfProducts() { return cartList.size(); }
+    public synchronized int getNumOfProducts() { return cartList.size(); }
 
     /**
-     * Method to get all cart information data
-     * @return 2D list of cart data containing units, name, and price of each product
+     * Method to check whether a product is in the cart
+     * @param product Product to check
+     * @return boolean true if the product has units in the cart
      */
     @Override
-    public List<ProductEntry> getProductStockInfo() { return cartList; }
+    public synchronized boolean containsProduct(Product product) { return cartIndex.containsKey(product.getID()); }
+
+    /**
+     * Method to get all cart information data; a snapshot, as the cart is changed under its lock by
+     * its user and by the ReservationReclaimer
+     * @return unmodifiable list of copies of the cart's entries, holding the product and units of each
+     */
+    @Override
+    public synchronized List<ProductEntry> getProductStockInfo() {
+        List<ProductEntry> cartInfo = new ArrayList<>(cartList.size());
+        for (ProductEntry productEntry : cartList) cartInfo.add(new ProductEntry(productEntry.getProduct(), productEntry.getStock()));
+        return Collections.unmodifiableList(cartInfo);
+    }
 
     /**
      * Proxy method used to clear the cart of the ShoppingCart
      */
-    public void clear() { cartList.clear(); }
+    public synchronized void clear() {
+        cartList.clear();
+        cartIndex.clear();
+        totalCents = 0;
+    }
+
+    /**
+     * Method to complete the purchase of everything in the cart. The units were already taken from
+     * the store when added, so they stay sold and the cart is emptied
+     * @return long total paid, in cents
+     * @throws CartExpiredException if the cart's stock was returned to the store since units were last added
+     */
+    public synchronized long checkout() {
+        long start = startOperation();
+        if (reclaimed) {
+            CartExpiredException err = new CartExpiredException("The cart expired and its items were returned to the store.");
+            recordError(InstrumentedStockContainer.Operation.CART_CHECKOUT, start, err);
+            throw err;
+        }
+        long paid = totalCents;
+        clear();
+        record(InstrumentedStockContainer.Operation.CART_CHECKOUT, start);
+        return paid;
+    }
+
+    /**
+     * Method to retrieve the exact total of the cart
+     * @return long total price of all units in the cart, in cents
+     */
+    public synchronized long getTotalCents() { return totalCents; }
 
 }
@@ -0,0 +1,81 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.util.*;
+
+/**
+ * Interface for the live stock of a store: an Inventory, or a ShardedInventory made of several.
+ * Adds to a ProductStockContainer the batch changes, reorder thresholds, snapshots and listeners
+ * StoreManager relies on
+ * @author Julian Nicolai 101154233
+ */
+public interface StockContainer extends ProductStockContainer {
+
+    /**
+     * Method to find a product by its ID
+     * @param id UUID of the product
+     * @return Product with the ID, null if it does not exist
+     */
+    Product getProduct(UUID id);
+
+    /**
+     * Method to retrieve the live ProductEntry of a Product, whose stock changes as the container does
+     * @param product Product to retrieve entry for
+     * @return ProductEntry of the product, null if it does not exist
+     */
+    ProductEntry getProductEntry(Product product);
+
+    /**
+     * Method to add stock to many products at once, adding any products that do not exist yet
+     * @param products map of each Product to the amount of stock to add
+     */
+    void addProductQuantities(Map<Product, Integer> products);
+
+    /**
+     * Method to remove stock from many products at once; either every product has its stock
+     * removed or, if any product is missing or short on stock, none do
+     * @param products map of each Product to the amount of stock to remove
+     */
+    void removeProductQuantities(Map<Product, Integer> products);
+
+    /**
+     * Method to set the stock below which a product is low and should be reordered
+     * @param product Product to set the threshold of
+     * @param threshold integer reorder threshold, 0 for none
+     */
+    void setReorderThreshold(Product product, int threshold);
+
+    /**
+     * Method to retrieve the reorder threshold of a product
+     * @param product Product to retrieve
+     * @return integer reorder threshold, 0 for none
+     */
+    int getReorderThreshold(Product product);
+
+    /**
+     * Method to list the products below their reorder threshold
+     * @return List of the low-stock ProductEntry's, a copy in product ID order
+     */
+    List<ProductEntry> getLowStockProducts();
+
+    /**
+     * Method to open a consistent read-only view of the container at the latest version; the
+     * snapshot must be closed
+     * @return InventorySnapshot of the container
+     */
+    InventorySnapshot openSnapshot();
+
+    /**
+     * Method to register a listener to be notified of added products and stock changes
+     * @param listener InventoryListener to notify
+     */
+    void addListener(InventoryListener listener);
+
+    /**
+     * Method to stop notifying a listener
+     * @param listener InventoryListener to remove
+     */
+    void removeListener(InventoryListener listener);
+
+}
@@ -0,0 +1,115 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import javax.swing.Timer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Inventory listener that passes stock changes on to every open StoreView session. Changes are
+ * coalesced by product and flushed on the event dispatch thread at most once per frame, so a burst
+ * of purchases repaints each affected product once rather than once per purchase
+ * @author Julian Nicolai 101154233
+ */
+public class StockUpdateDispatcher implements InventoryListener {
+
+    /**
+     * Time in milliseconds changes are gathered for before being flushed, about one frame
+     */
+    private static final int FRAME_MILLIS = 16;
+
+    /**
+     * Sessions currently showing the store
+     */
+    private final List<StoreView> sessions;
+
+    /**
+     * Products changed since the last flush by product ID
+     */
+    private final ConcurrentHashMap<UUID, Product> changedProducts;
+
+    /**
+     * Whether products were added since the last flush
+     */
+    private final AtomicBoolean catalogChanged;
+
+    /**
+     * Whether a flush is already scheduled
+     */
+    private final AtomicBoolean flushScheduled;
+
+    /**
+     * One shot timer running the flush on the event dispatch thread
+     */
+    private final Timer flushTimer;
+
+    /**
+     * Constructor for a StockUpdateDispatcher with no sessions
+     */
+    public StockUpdateDispatcher() {
+        this.sessions = new CopyOnWriteArrayList<>();
+        this.changedProducts = new ConcurrentHashMap<>();
+        this.catalogChanged = new AtomicBoolean();
+        this.flushScheduled = new AtomicBoolean();
+        this.flushTimer = new Timer(FRAME_MILLIS, e -> flush());
+        this.flushTimer.setRepeats(false);
+    }
+
+    /**
+     * Method to start passing changes on to a session
+     * @param session StoreView showing the store
+     */
+    public void addSession(StoreView session) { if (!sessions.contains(session)) sessions.add(session); }
+
+    /**
+     * Method to stop passing changes on to a session
+     * @param session StoreView no longer showing the store
+     */
+    public void removeSession(StoreView session) { sessions.remove(session); }
+
+    @Override
+    public void productAdded(Product product) {
+        if (sessions.isEmpty()) return;
+        catalogChanged.set(true);
+        scheduleFlush();
+    }
+
+    @Override
+    public void stockChanged(Product product) {
+        if (sessions.isEmpty()) return;
+        changedProducts.put(product.getID(), product);
+        scheduleFlush();
+    }
+
+    /**
+     * Method to schedule a flush unless one is already waiting
+     */
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) flushTimer.start();
+    }
+
+    /**
+     * Method to pass every change gathered since the last flush on to the open sessions
+     */
+    private void flush() {
+
+        // cleared first so changes made while flushing schedule the next flush rather than being lost
+        flushScheduled.set(false);
+
+        List<Product> products = new ArrayList<>(changedProducts.size());
+        for (Iterator<Product> iterator = changedProducts.values().iterator(); iterator.hasNext(); ) {
+            products.add(iterator.next());
+            iterator.remove();
+        }
+        boolean productsAdded = catalogChanged.getAndSet(false);
+
+        for (StoreView session : sessions) {
+            if (productsAdded) session.refreshCatalog();
+            for (Product product : products) session.refreshProductStock(product);
+        }
+    }
+
+}
@@ -0,0 +1,186 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark suite of the store core, giving a baseline to tell whether a change makes these paths
+ * faster or slower. Each benchmark is run for every combination of catalog size and thread count,
+ * each thread with its own cart of the given size: threads call it for a warm-up period so it is
+ * compiled, then for a measured period, and the throughput and mean time per call are printed as a
+ * table. The benchmarks are Inventory getProductQuantity, addProductQuantity and
+ * removeProductQuantity; ShoppingCart add and remove, timed as a pair so the cart stays the same
+ * size; the cart total StoreView shows, ShoppingCart.getTotalCents; and StoreManager.addUser
+ * <pre>
+ * java com.company.store.StoreBenchmark [catalog sizes] [cart size] [thread counts] [seconds]
+ * </pre>
+ * where catalog sizes and thread counts are comma separated lists, such as 1000,100000
+ * @author Julian Nicolai 101154233
+ */
+public class StoreBenchmark {
+
+    /**
+     * Number of calls between checks of the clock, so reading it costs little per call
+     */
+    private static final int CALLS_PER_CHECK = 64;
+
+    /**
+     * Stock each product starts with, enough that removing never runs out
+     */
+    private static final int STOCK = 1_000_000_000;
+
+    /**
+     * Call made by one thread of a benchmark
+     */
+    private interface Call {
+
+        /**
+         * Method to make one call
+         * @param random Random of the thread, to pick products with
+         */
+        void run(Random random);
+    }
+
+    /**
+     * Benchmark of one operation
+     * @param name String name to report the benchmark under
+     * @param setUp function building the call a thread makes from the thread's index and cart
+     */
+    private record Benchmark(String name, CallFactory setUp) { }
+
+    /**
+     * Builder of the call each thread of a benchmark makes
+     */
+    private interface CallFactory {
+
+        /**
+         * Method to build a thread's call
+         * @param thread int index of the thread
+         * @param cart ShoppingCart of the thread, holding the cart size in products
+         * @return Call to make
+         */
+        Call create(int thread, ShoppingCart cart);
+    }
+
+    /**
+     * Method to run the benchmarks
+     * @param args optional catalog sizes (default 1000,100000), cart size (default 20), thread
+     *             counts (default 1,4) and seconds of warm-up and of measurement (default 1)
+     */
+    public static void main(String[] args) throws Exception {
+
+        int[] catalogSizes = parseList(args.length > 0 ? args[0] : "1000,100000");
+        int cartSize = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int[] threadCounts = parseList(args.length > 2 ? args[2] : "1,4");
+        long nanos = TimeUnit.SECONDS.toNanos(args.length > 3 ? Integer.parseInt(args[3]) : 1);
+
+        if (cartSize < 1) throw new IllegalArgumentException("Cart size must be 1 or more.");
+
+        System.out.printf("%-32s %10s %8s %8s %14s %10s%n", "benchmark", "products", "cart", "threads", "calls/s", "ns/call");
+        for (int catalogSize : catalogSizes) {
+            if (catalogSize < cartSize) throw new IllegalArgumentException("Catalog must hold at least a cart of products.");
+
+            StoreManager store = new StoreManager(new Inventory(), null);
+            Product[] products = new Product[catalogSize];
+            for (int i = 0; i < catalogSize; i++) {
+                products[i] = new Product("Product " + i, 1 + i % 100, null, "Benchmark product " + i);
+                store.addProductQuantity(products[i], STOCK);
+            }
+
+            AtomicLong users = new AtomicLong();
+            List<Benchmark> benchmarks = List.of(
+                    new Benchmark("Inventory.getProductQuantity", (thread, cart) ->
+                            random -> store.getProductQuantity(products[random.nextInt(products.length)])),
+                    new Benchmark("Inventory.addProductQuantity", (thread, cart) ->
+                            random -> store.addProductQuantity(products[random.nextInt(products.length)], 1)),
+                    new Benchmark("Inventory.removeProductQuantity", (thread, cart) ->
+                            random -> store.removeProductQuantity(products[random.nextInt(products.length)], 1)),
+                    new Benchmark("ShoppingCart add and remove", (thread, cart) -> {
+                        List<ProductEntry> cartEntries = new ArrayList<>(cart.getProductStockInfo());
+                        return random -> {
+                            Product product = cartEntries.get(random.nextInt(cartEntries.size())).getProduct();
+                            cart.addProductQuantity(product, 1);
+                            cart.removeProductQuantity(product, 1);
+                        };
+                    }),
+                    new Benchmark("StoreView cart total", (thread, cart) -> random -> cart.getTotalCents()),
+                    new Benchmark("StoreManager.addUser", (thread, cart) ->
+                            random -> store.addUser("user" + users.incrementAndGet(), "password")));
+
+            for (Benchmark benchmark : benchmarks) {
+                for (int numThreads : threadCounts) {
+                    double callsPerSecond = run(store, products, cartSize, benchmark, numThreads, nanos);
+                    System.out.printf("%-32s %10d %8d %8d %14.0f %10.1f%n", benchmark.name(), catalogSize, cartSize,
+                            numThreads, callsPerSecond, numThreads * 1e9 / callsPerSecond);
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to run a benchmark on a number of threads, each with a cart of its own
+     * @param store StoreManager the benchmark calls
+     * @param products Product[] of the store
+     * @param cartSize int number of products in each thread's cart
+     * @param benchmark Benchmark to run
+     * @param numThreads int number of threads
+     * @param nanos long nanoseconds of warm-up and of measurement
+     * @return double calls per second of all the threads together
+     */
+    private static double run(StoreManager store, Product[] products, int cartSize, Benchmark benchmark,
+                              int numThreads, long nanos) throws Exception {
+
+        ExecutorService threads = Executors.newFixedThreadPool(numThreads);
+        CyclicBarrier ready = new CyclicBarrier(numThreads);
+        List<Future<Long>> results = new ArrayList<>();
+
+        for (int i = 0; i < numThreads; i++) {
+            int thread = i;
+            results.add(threads.submit(() -> {
+                Random random = new Random(thread);
+                ShoppingCart cart = new ShoppingCart(store);
+                while (cart.getNumOfProducts() < cartSize) {
+                    Product product = products[random.nextInt(products.length)];
+                    if (!cart.containsProduct(product)) cart.addProductQuantity(product, 1);
+                }
+                Call call = benchmark.setUp().create(thread, cart);
+
+                // every thread starts warming up together, and measures over the same period
+                ready.await();
+                long warmedUp = System.nanoTime() + nanos;
+                long end = warmedUp + nanos;
+                while (System.nanoTime() - warmedUp < 0) {
+                    for (int j = 0; j < CALLS_PER_CHECK; j++) call.run(random);
+                }
+                long calls = 0;
+                while (System.nanoTime() - end < 0) {
+                    for (int j = 0; j < CALLS_PER_CHECK; j++) call.run(random);
+                    calls += CALLS_PER_CHECK;
+                }
+                return calls;
+            }));
+        }
+
+        long calls = 0;
+        for (Future<Long> result : results) calls += result.get();
+        threads.shutdown();
+        return calls * 1e9 / nanos;
+    }
+
+    /**
+     * Method to parse a comma separated list of positive numbers
+     * @param list String to parse
+     * @return int[] numbers of the list
+     */
+    private static int[] parseList(String list) {
+        int[] numbers = Arrays.stream(list.split(",")).mapToInt(number -> Integer.parseInt(number.trim())).toArray();
+        for (int number : numbers) {
+            if (number < 1) throw new IllegalArgumentException("Catalog sizes and thread counts must be 1 or more.");
+        }
+        return numbers;
+    }
+
+}
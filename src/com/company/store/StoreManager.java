@@ -2,7 +2,10 @@
 
 package com.company.store;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Interface to manage active users and the store Inventory
@@ -13,19 +16,92 @@ public class StoreManager {
     /**
      * Inventory object that stores all products and their stock
      */
-    private final Inventory inventory;
+    private final StockContainer inventory;
 
     /**
-     * List of all StoreView active users
+     * Container single product operations go through: the inventory, or its instrumented decorator
      */
-    private final List<StoreView> users;
+    private final ProductStockContainer stockContainer;
 
     /**
-     * Constructor used to initialize attributes
+     * Instrumented decorator of the inventory, null if operations are not recorded
      */
-    public StoreManager() {
-        this.inventory = new Inventory();
-        this.users = new ArrayList<>();
+    private final InstrumentedStockContainer instrumentation;
+
+    /**
+     * Registry of all user accounts
+     */
+    private final UserRegistry userRegistry;
+
+    /**
+     * Sessions of users who have logged in, by folded username
+     */
+    private final Map<String, StoreView> sessions;
+
+    /**
+     * Reclaimer returning stock of abandoned carts to the inventory, null if carts never expire
+     */
+    private final ReservationReclaimer reservationReclaimer;
+
+    /**
+     * Dispatcher passing inventory changes on to the open sessions
+     */
+    private final StockUpdateDispatcher stockUpdateDispatcher;
+
+    /**
+     * Search index over the names and descriptions of the inventory's products
+     */
+    private final ProductSearchIndex searchIndex;
+
+    /**
+     * Sorted indexes of the inventory's products for paged queries
+     */
+    private final CatalogQueryIndex queryIndex;
+
+    /**
+     * Constructor used to initialize attributes, cart reservations never expire
+     */
+    public StoreManager() { this(new Inventory(), null); }
+
+    /**
+     * Constructor for a store whose carts give their stock back after going unused
+     * @param reservationTtl Duration a cart keeps its stock after its last addition
+     */
+    public StoreManager(Duration reservationTtl) { this(new Inventory(), reservationTtl); }
+
+    /**
+     * Constructor for a store using an existing inventory, such as a persistent one
+     * @param inventory StockContainer of the store, an Inventory or ShardedInventory
+     * @param reservationTtl Duration a cart keeps its stock after its last addition, null to never expire
+     */
+    public StoreManager(StockContainer inventory, Duration reservationTtl) { this(inventory, reservationTtl, null); }
+
+    /**
+     * Constructor for a store whose inventory operations are recorded and exposed through JMX
+     * @param inventory StockContainer of the store, an Inventory or ShardedInventory
+     * @param reservationTtl Duration a cart keeps its stock after its last addition, null to never expire
+     * @param metricsName String name to register the inventory's metrics under, null to not record them
+     */
+    public StoreManager(StockContainer inventory, Duration reservationTtl, String metricsName) {
+        this.inventory = inventory;
+        if (metricsName != null) {
+            this.instrumentation = new InstrumentedStockContainer(inventory);
+            this.instrumentation.registerMBeans(metricsName);
+            this.stockContainer = instrumentation;
+        } else {
+            this.instrumentation = null;
+            this.stockContainer = inventory;
+        }
+        this.userRegistry = new UserRegistry();
+        this.sessions = new ConcurrentHashMap<>();
+        this.reservationReclaimer = reservationTtl != null ? new ReservationReclaimer(reservationTtl) : null;
+        this.stockUpdateDispatcher = new StockUpdateDispatcher();
+        inventory.addListener(stockUpdateDispatcher);
+        // built by the first search, so the products' names and descriptions are not read at startup
+        this.searchIndex = new ProductSearchIndex(inventory);
+        inventory.addListener(searchIndex);
+        this.queryIndex = new CatalogQueryIndex(inventory);
+        inventory.addListener(queryIndex);
     }
 
     /**
@@ -33,55 +109,200 @@ public class StoreManager {
      * @param product Product to add stock
      * @param numUnits number of units to be added
      */
-    public void addProductQuantity(Product product, int numUnits) { inventory.addProductQuantity(product, numUnits); }
+    public void addProductQuantity(Product product, int numUnits) { stockContainer.addProductQuantity(product, numUnits); }
 
     /**
      * Proxy method to remove stock from the inventory
      * @param product Product to remove stock
      * @param numUnits number of units to be removed
      */
-    public void removeProductQuantity(Product product, int numUnits) { inventory.removeProductQuantity(product, numUnits); }
+    public void removeProductQuantity(Product product, int numUnits) { stockContainer.removeProductQuantity(product, numUnits); }
+
+    /**
+     * Proxy method to add stock to many products in the inventory at once
+     * @param products map of each Product to the number of units to be added
+     */
+    public void addProductQuantities(Map<Product, Integer> products) {
+        if (instrumentation != null) instrumentation.addProductQuantities(products);
+        else inventory.addProductQuantities(products);
+    }
+
+    /**
+     * Proxy method to remove stock from many products in the inventory at once (all or nothing)
+     * @param products map of each Product to the number of units to be removed
+     */
+    public void removeProductQuantities(Map<Product, Integer> products) {
+        if (instrumentation != null) instrumentation.removeProductQuantities(products);
+        else inventory.removeProductQuantities(products);
+    }
+
+    /**
+     * Method to bulk import a CSV or JSON lines catalog file into the inventory
+     * @param path Path of the catalog file, its format given by its extension
+     * @return CatalogImporter.Report of the rows imported and rejected
+     */
+    public CatalogImporter.Report importCatalog(Path path) { return new CatalogImporter(inventory).importFile(path); }
 
     /**
      * Method to retrieve stock using a specific product ID
      * @param product product to retrieve
      * @return integer of stock available
      */
-    public int getProductQuantity(Product product) { return inventory.getProductQuantity(product); }
+    public int getProductQuantity(Product product) { return stockContainer.getProductQuantity(product); }
 
     /**
      * Method to retrieve the number of products in cart
      * @return int number of products
      */
-    public int getNumOfProducts() { return inventory.getNumOfProducts(); }
+    public int getNumOfProducts() { return stockContainer.getNumOfProducts(); }
+
+    /**
+     * Proxy method to find a product in the inventory by its ID
+     * @param id UUID of the product
+     * @return Product with the ID, null if it does not exist
+     */
+    public Product getProduct(UUID id) { return inventory.getProduct(id); }
+
+    /**
+     * Method to search the products whose names and descriptions contain every word of a query,
+     * treating the last word as the start of a word while it is being typed
+     * @param query String words to find, in any case
+     * @param limit int largest number of results
+     * @return List of the matching products and their stock, in inventory order
+     */
+    public List<ProductEntry> searchProducts(String query, int limit) {
+
+        List<ProductEntry> results = new ArrayList<>();
+        for (Product product : searchIndex.search(query, limit)) {
+            ProductEntry productEntry = inventory.getProductEntry(product);
+            if (productEntry != null) results.add(productEntry);
+        }
+        return results;
+    }
+
+    /**
+     * Method to retrieve a page of products in sorted order
+     * @param sortKey CatalogQueryIndex.SortKey to order the products by
+     * @param descending boolean true for largest first
+     * @param page int number of the page, from 0
+     * @param pageSize int number of products per page
+     * @return CatalogQueryIndex.Page of products and the total number of products
+     */
+    public CatalogQueryIndex.Page queryProducts(CatalogQueryIndex.SortKey sortKey, boolean descending, int page, int pageSize) {
+        return queryIndex.query(sortKey, descending, Long.MIN_VALUE, Long.MAX_VALUE, false, page, pageSize);
+    }
+
+    /**
+     * Method to retrieve a page of the products in a price range in sorted order
+     * @param sortKey CatalogQueryIndex.SortKey to order the products by
+     * @param descending boolean true for largest first
+     * @param minPriceCents long lowest price included, in cents
+     * @param maxPriceCents long highest price included, in cents
+     * @param inStockOnly boolean true to leave out products without stock
+     * @param page int number of the page, from 0
+     * @param pageSize int number of products per page
+     * @return CatalogQueryIndex.Page of products and the total number of matches
+     */
+    public CatalogQueryIndex.Page queryProducts(CatalogQueryIndex.SortKey sortKey, boolean descending, long minPriceCents,
+                                                long maxPriceCents, boolean inStockOnly, int page, int pageSize) {
+        return queryIndex.query(sortKey, descending, minPriceCents, maxPriceCents, inStockOnly, page, pageSize);
+    }
+
+    /**
+     * Proxy method to check whether a product exists in the inventory
+     * @param product Product to check
+     * @return boolean true if the product exists
+     */
+    public boolean containsProduct(Product product) { return stockContainer.containsProduct(product); }
 
     /**
      * Proxy method to retrieve information about the products contained in Inventory
      * @return 2D list of objects containing the product and its stock
      */
-    public List<ProductEntry> getProductStockInfo() { return inventory.getProductStockInfo(); }
+    public List<ProductEntry> getProductStockInfo() { return stockContainer.getProductStockInfo(); }
+
+    /**
+     * Proxy method to open a consistent read-only view of the inventory, for reports and exports
+     * that must not see changes made while they read; the snapshot must be closed
+     * @return InventorySnapshot of the inventory
+     */
+    public InventorySnapshot openSnapshot() { return inventory.openSnapshot(); }
+
+    /**
+     * Proxy method to set the stock below which a product should be reordered
+     * @param product Product to set the threshold of
+     * @param threshold integer reorder threshold, 0 for none
+     */
+    public void setReorderThreshold(Product product, int threshold) { inventory.setReorderThreshold(product, threshold); }
+
+    /**
+     * Proxy method to list the products below their reorder threshold
+     * @return List of the low-stock ProductEntry's
+     */
+    public List<ProductEntry> getLowStockProducts() { return inventory.getLowStockProducts(); }
+
+    /**
+     * Proxy method to register a listener of inventory changes
+     * @param listener InventoryListener to notify
+     */
+    public void addInventoryListener(InventoryListener listener) { inventory.addListener(listener); }
+
+    /**
+     * Method to start showing other users' stock changes in a session
+     * @param session StoreView displaying the store
+     */
+    public void openSession(StoreView session) { stockUpdateDispatcher.addSession(session); }
+
+    /**
+     * Method to stop showing stock changes in a session
+     * @param session StoreView no longer displaying the store
+     */
+    public void closeSession(StoreView session) { stockUpdateDispatcher.removeSession(session); }
 
     /**
-     * Method to add a new user to the StoreManager
+     * Method to register a new user account
      * @param username username of user
      * @param password password of user
+     * @return Account registered
      */
-    public StoreView addUser(String username, String password) {
+    public Account addUser(String username, String password) { return userRegistry.register(username, password); }
 
-        for (StoreView user : users) {
-            if (user.getUsername().equals(username))
-                throw new IllegalArgumentException("User already exists; choose a different username.");
-        }
+    /**
+     * Method to log a user in, creating their session and cart on their first login. Later logins
+     * return the same session, so the cart is kept between logins
+     * @param username username of user, in any case
+     * @param password password of user
+     * @return StoreView session of the user, null if the username or password is incorrect
+     */
+    public StoreView login(String username, char[] password) {
 
-        StoreView newUser = new StoreView(this, username, password);
-        users.add(newUser);
+        Account account = userRegistry.authenticate(username, password);
+        if (account == null) return null;
 
-        return newUser;
+        return sessions.computeIfAbsent(Account.foldUsername(account.getUsername()), key -> new StoreView(this, account));
     }
 
     /**
-     * Method to retrieve current users in StoreManager
-     * @return List of users
+     * Method to retrieve the registry of user accounts
+     * @return UserRegistry of the store
+     */
+    public UserRegistry getUserRegistry() { return this.userRegistry; }
+
+    /**
+     * Method to retrieve the number of users who have logged in since the store started
+     * @return int number of sessions
+     */
+    public int getNumOfSessions() { return sessions.size(); }
+
+    /**
+     * Method to retrieve the recorded metrics of the inventory's operations
+     * @return InstrumentedStockContainer of the inventory, null if operations are not recorded
+     */
+    public InstrumentedStockContainer getInstrumentation() { return this.instrumentation; }
+
+    /**
+     * Method to retrieve the reclaimer of abandoned cart stock and its metrics
+     * @return ReservationReclaimer of the store, null if cart reservations never expire
      */
-    public List<StoreView> getUsers() { return this.users; }
+    public ReservationReclaimer getReservationReclaimer() { return this.reservationReclaimer; }
 }
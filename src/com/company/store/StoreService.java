@@ -0,0 +1,374 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless HTTP front end of a StoreManager, served by the JDK's built-in HTTP server. Each request
+ * runs on its own virtual thread where the JVM supports them, otherwise on a cached thread pool.
+ * Responses are JSON; invalid requests are answered with status 400 and the store's error message,
+ * and requests the store fails to complete with status 500.
+ * If the store has a ReservationReclaimer, a cart left unused for the reservation time is closed
+ * and its stock returned; checking it out is answered with status 410
+ * <pre>
+ * GET    /products?offset=0&amp;limit=50           catalog page with stock
+ * GET    /products?sort=price&amp;desc=true&amp;minPrice=1&amp;maxPrice=20&amp;inStock=true&amp;page=0&amp;limit=50
+ *                                                 sorted, filtered catalog page
+ * GET    /products/low-stock                      products below their reorder threshold
+ * POST   /carts                                   new cart
+ * GET    /carts/{cart}                            cart contents and total
+ * POST   /carts/{cart}/items?product=ID&amp;units=N  add units to the cart
+ * DELETE /carts/{cart}/items?product=ID&amp;units=N  remove units from the cart
+ * POST   /carts/{cart}/checkout                   buy the cart's contents and close it
+ * </pre>
+ * @author Julian Nicolai 101154233
+ */
+public class StoreService {
+
+    /**
+     * Number of products returned by a catalog request without a limit
+     */
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
+    static {
+        // responses are small, so send them without waiting to fill a packet; read when the server first starts
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    /**
+     * Store the service exposes
+     */
+    private final StoreManager store;
+
+    /**
+     * Open carts by ID
+     */
+    private final Map<UUID, ShoppingCart> carts;
+
+    /**
+     * Server accepting requests
+     */
+    private final HttpServer server;
+
+    /**
+     * Threads running requests
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Constructor for a service of the store on the given address; call start to accept requests
+     * @param store StoreManager to expose
+     * @param address InetSocketAddress to listen on, port 0 for any free port
+     */
+    public StoreService(StoreManager store, InetSocketAddress address) {
+        this.store = store;
+        this.carts = new ConcurrentHashMap<>();
+        this.executor = newRequestExecutor();
+        try {
+            this.server = HttpServer.create(address, 0);
+        } catch (IOException err) {
+            throw new UncheckedIOException(err);
+        }
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+    }
+
+    /**
+     * Method to create the executor running requests: one virtual thread per request where the JVM
+     * has them (Java 21 and later), otherwise a cached pool of platform threads
+     * @return ExecutorService for requests
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException err) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Method to start accepting requests
+     */
+    public void start() { server.start(); }
+
+    /**
+     * Method to stop accepting requests, letting requests in progress finish
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    /**
+     * Method to retrieve the port the service listens on
+     * @return int port
+     */
+    public int getPort() { return server.getAddress().getPort(); }
+
+    /**
+     * Method to retrieve the number of open carts
+     * @return int number of carts
+     */
+    public int getNumOfCarts() { return carts.size(); }
+
+    /**
+     * Method to route a request and send its response
+     * @param exchange HttpExchange of the request
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().substring(1).split("/");
+
+        int status = 200;
+        String body;
+        try {
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            if (path.length == 1 && path[0].equals("products") && method.equals("GET")) {
+                body = productsJson(query);
+            } else if (path.length == 2 && path[0].equals("products") && path[1].equals("low-stock") && method.equals("GET")) {
+                body = productArrayJson(store.getLowStockProducts());
+            } else if (path.length == 1 && path[0].equals("carts") && method.equals("POST")) {
+                UUID id = UUID.randomUUID();
+                // the cart is closed once it expires, so abandoned carts are not kept forever
+                carts.put(id, new ShoppingCart(store, expired -> carts.remove(id, expired)));
+                status = 201;
+                body = "{\"cart\":\"" + id + "\"}";
+            } else if (path.length >= 2 && path[0].equals("carts")) {
+                body = handleCart(method, path, query);
+            } else {
+                status = 404;
+                body = errorJson("Unknown request.");
+            }
+        } catch (NoSuchElementException | ProductNotFoundException err) {
+            status = 404;
+            body = errorJson(err.getMessage());
+        } catch (CartExpiredException err) {
+            status = 410;
+            body = errorJson(err.getMessage());
+        } catch (IllegalArgumentException | ArithmeticException err) {
+            // ArithmeticException is a number too large for its field, such as a price with too many digits
+            status = 400;
+            body = errorJson(err.getMessage());
+        } catch (RuntimeException err) {
+            // the store could not complete the request, such as when its log cannot be written
+            status = 500;
+            body = errorJson("The store could not complete the request: " + err.getMessage());
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Method to handle a request for a cart
+     * @param method String HTTP method
+     * @param path String[] path segments, starting with "carts" and the cart ID
+     * @param query Map of query parameters
+     * @return String JSON response
+     */
+    private String handleCart(String method, String[] path, Map<String, String> query) {
+
+        UUID id = UUID.fromString(path[1]);
+        ShoppingCart cart = carts.get(id);
+        if (cart == null) throw new NoSuchElementException("The cart requested does not exist or has expired.");
+
+        if (path.length == 2 && method.equals("GET")) {
+            return cartJson(cart);
+        } else if (path.length == 3 && path[2].equals("items") && method.equals("POST")) {
+            cart.addProductQuantity(findProduct(query), parseInt(query, "units", 1));
+            return cartJson(cart);
+        } else if (path.length == 3 && path[2].equals("items") && method.equals("DELETE")) {
+            cart.removeProductQuantity(findProduct(query), parseInt(query, "units", 1));
+            return cartJson(cart);
+        } else if (path.length == 3 && path[2].equals("checkout") && method.equals("POST")) {
+            // removed first so a cart can only be checked out once
+            if (carts.remove(id) == null) throw new NoSuchElementException("The cart requested does not exist or has expired.");
+            return "{\"paid\":" + formatCents(cart.checkout()) + "}";
+        }
+        throw new NoSuchElementException("Unknown request.");
+    }
+
+    /**
+     * Method to find the product named by the product query parameter
+     * @param query Map of query parameters
+     * @return Product requested
+     */
+    private Product findProduct(Map<String, String> query) {
+
+        String id = query.get("product");
+        if (id == null) throw new IllegalArgumentException("A product must be specified.");
+
+        Product product = store.getProduct(UUID.fromString(id));
+        if (product == null) throw new NoSuchElementException("The product requested does not exist.");
+        return product;
+    }
+
+    /**
+     * Method to build a page of the catalog, in inventory order or, if a sort is given, sorted and
+     * filtered through the store's catalog indexes
+     * @param query Map of query parameters: offset and limit, or sort (price, name or stock) with
+     *              optional desc, minPrice, maxPrice, inStock, page and limit
+     * @return String JSON array of products
+     */
+    private String productsJson(Map<String, String> query) {
+
+        int limit = Math.max(1, parseInt(query, "limit", DEFAULT_PAGE_SIZE));
+        List<ProductEntry> entries;
+
+        if (query.containsKey("sort")) {
+            CatalogQueryIndex.SortKey sortKey = CatalogQueryIndex.SortKey.valueOf(query.get("sort").toUpperCase(Locale.ROOT));
+            long minPriceCents = query.containsKey("minPrice") ? parseCents(query.get("minPrice")) : Long.MIN_VALUE;
+            long maxPriceCents = query.containsKey("maxPrice") ? parseCents(query.get("maxPrice")) : Long.MAX_VALUE;
+            entries = store.queryProducts(sortKey, Boolean.parseBoolean(query.get("desc")), minPriceCents, maxPriceCents,
+                    Boolean.parseBoolean(query.get("inStock")), parseInt(query, "page", 0), limit).entries();
+        } else {
+            // read from a snapshot so a page never mixes stock from before and after a checkout
+            try (InventorySnapshot snapshot = store.openSnapshot()) {
+                List<ProductEntry> catalog = snapshot.getProductStockInfo();
+                int offset = Math.min(catalog.size(), Math.max(0, parseInt(query, "offset", 0)));
+                entries = new ArrayList<>(catalog.subList(offset, (int) Math.min(catalog.size(), (long) offset + limit)));
+            }
+        }
+
+        return productArrayJson(entries);
+    }
+
+    /**
+     * Method to describe a list of products and their stock
+     * @param entries List of ProductEntry's to describe
+     * @return String JSON array of products
+     */
+    private static String productArrayJson(List<ProductEntry> entries) {
+
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < entries.size(); i++) {
+            ProductEntry productEntry = entries.get(i);
+            Product product = productEntry.getProduct();
+            if (i > 0) json.append(',');
+            json.append("{\"id\":\"").append(product.getID())
+                    .append("\",\"name\":").append(quote(product.getName()))
+                    .append(",\"price\":").append(formatCents(product.getPriceCents()))
+                    .append(",\"stock\":").append(productEntry.getStock()).append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Method to describe a cart
+     * @param cart ShoppingCart to describe
+     * @return String JSON object of the cart's items and total
+     */
+    private static String cartJson(ShoppingCart cart) {
+
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        synchronized (cart) {
+            List<ProductEntry> entries = cart.getProductStockInfo();
+            for (int i = 0; i < entries.size(); i++) {
+                if (i > 0) json.append(',');
+                json.append("{\"product\":\"").append(entries.get(i).getProduct().getID())
+                        .append("\",\"units\":").append(entries.get(i).getStock()).append('}');
+            }
+            json.append("],\"total\":").append(formatCents(cart.getTotalCents()));
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Method to parse a query string
+     * @param rawQuery String encoded query, may be null
+     * @return Map of decoded parameter names to values
+     */
+    private static Map<String, String> parseQuery(String rawQuery) {
+
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return query;
+
+        for (String parameter : rawQuery.split("&")) {
+            int split = parameter.indexOf('=');
+            String name = split < 0 ? parameter : parameter.substring(0, split);
+            String value = split < 0 ? "" : parameter.substring(split + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    /**
+     * Method to read an integer query parameter
+     * @param query Map of query parameters
+     * @param name String parameter name
+     * @param defaultValue int value if the parameter is missing
+     * @return int value of the parameter
+     */
+    private static int parseInt(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    /**
+     * Method to parse an amount of dollars into cents
+     * @param dollars String decimal amount, such as 12.99
+     * @return long amount in cents
+     */
+    private static long parseCents(String dollars) {
+        try {
+            return new BigDecimal(dollars).movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        } catch (ArithmeticException err) {
+            throw new IllegalArgumentException("Price " + dollars + " is too large.", err);
+        }
+    }
+
+    /**
+     * Method to format an amount of cents as a JSON number of dollars
+     * @param cents long amount in cents
+     * @return String exact decimal amount
+     */
+    private static String formatCents(long cents) { return BigDecimal.valueOf(cents, 2).toPlainString(); }
+
+    /**
+     * Method to build an error response
+     * @param message String error message
+     * @return String JSON object of the error
+     */
+    private static String errorJson(String message) { return "{\"error\":" + quote(message) + "}"; }
+
+    /**
+     * Method to quote a string as JSON
+     * @param string String to quote, may be null
+     * @return String JSON string literal, or null
+     */
+    private static String quote(String string) {
+
+        if (string == null) return "null";
+
+        StringBuilder json = new StringBuilder(string.length() + 2).append('"');
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c == '"' || c == '\\') json.append('\\').append(c);
+            else if (c < 0x20) json.append(String.format("\\u%04x", (int) c));
+            else json.append(c);
+        }
+        return json.append('"').toString();
+    }
+
+}
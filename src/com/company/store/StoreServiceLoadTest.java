@@ -0,0 +1,120 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local load test of the StoreService. Starts a service on a free port and has a number of client
+ * threads repeatedly browse the catalog, open a cart, add and remove a unit, and check out, then
+ * reports requests per second and latency percentiles from a LatencyHistogram. Removing the unit again keeps the stock
+ * steady however long the test runs
+ * <pre>
+ * java com.company.store.StoreServiceLoadTest [clients] [seconds]
+ * </pre>
+ * @author Julian Nicolai 101154233
+ */
+public class StoreServiceLoadTest {
+
+    /**
+     * Method to run the load test
+     * @param args optional number of client threads (default 32) and duration in seconds (default 10)
+     */
+    public static void main(String[] args) throws Exception {
+
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        // the product bought has a unit for every client, so no request fails for lack of stock
+        StoreManager store = new StoreManager();
+        Product product = store.getProductStockInfo().get(0).getProduct();
+        store.addProductQuantity(product, clients);
+
+        StoreService service = new StoreService(store, new InetSocketAddress("127.0.0.1", 0));
+        service.start();
+
+        String base = "http://127.0.0.1:" + service.getPort();
+        ExecutorService clientExecutor = Executors.newCachedThreadPool();
+        HttpClient client = HttpClient.newBuilder().executor(clientExecutor).build();
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService threads = Executors.newFixedThreadPool(clients);
+        List<Future<?>> results = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            results.add(threads.submit(() -> runClient(client, base, product.getID().toString(), deadline, latencies, errors)));
+        }
+
+        for (Future<?> result : results) result.get();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        threads.shutdown();
+        clientExecutor.shutdown();
+        service.stop();
+
+        System.out.printf("%d clients, %.1f s: %d requests, %d errors, %.0f requests/s%n",
+                clients, elapsed, latencies.getCount(), errors.get(), latencies.getCount() / elapsed);
+        System.out.printf("latency p50 %.2f ms, p99 %.2f ms, max %.2f ms%n", latencies.getPercentile(0.50) / 1e6,
+                latencies.getPercentile(0.99) / 1e6, latencies.getMax() / 1e6);
+    }
+
+    /**
+     * Method to run one client until the deadline
+     * @param client HttpClient to send requests with
+     * @param base String URL of the service
+     * @param product String ID of the product to buy
+     * @param deadline long System.nanoTime() value to stop at
+     * @param latencies LatencyHistogram recording the latency of every request
+     * @param errors AtomicLong counting responses that were not successful
+     * @return null, so the client can be submitted as a Callable
+     */
+    private static Void runClient(HttpClient client, String base, String product, long deadline,
+                                  LatencyHistogram latencies, AtomicLong errors) throws Exception {
+
+        while (System.nanoTime() - deadline < 0) {
+            latencies.record(send(client, "GET", base + "/products?limit=20", errors, null));
+            String[] cart = new String[1];
+            latencies.record(send(client, "POST", base + "/carts", errors, cart));
+            String cartUrl = base + "/carts/" + cart[0];
+            latencies.record(send(client, "POST", cartUrl + "/items?units=1&product=" + product, errors, null));
+            latencies.record(send(client, "DELETE", cartUrl + "/items?units=1&product=" + product, errors, null));
+            latencies.record(send(client, "POST", cartUrl + "/checkout", errors, null));
+        }
+        return null;
+    }
+
+    /**
+     * Method to send a request and time it
+     * @param client HttpClient to send the request with
+     * @param method String HTTP method
+     * @param url String URL of the request
+     * @param errors AtomicLong counting responses that were not successful
+     * @param cart String[] to receive the cart ID of the response, or null
+     * @return long latency in nanoseconds
+     */
+    private static long send(HttpClient client, String method, String url, AtomicLong errors, String[] cart) throws Exception {
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(10))
+                .method(method, HttpRequest.BodyPublishers.noBody()).build();
+
+        long start = System.nanoTime();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        long latency = System.nanoTime() - start;
+
+        if (response.statusCode() >= 300) errors.incrementAndGet();
+        if (cart != null) cart[0] = response.body().substring(9, 45);
+        return latency;
+    }
+
+}
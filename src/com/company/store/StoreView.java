@@ -4,8 +4,10 @@ package com.company.store;
 
 import javax.swing.*;
 import javax.swing.border.*;
+import javax.swing.event.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.math.BigDecimal;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.List;
@@ -31,16 +33,25 @@ public class StoreView {
      */
     private final ShoppingCart cart;
 
+    /**
+     * Format of all displayed prices, only used on the event dispatch thread
+     */
+    private static final DecimalFormat PRICE_FORMAT = new DecimalFormat("$#,##0.00");
+
     /**
      * JFrame of the current window
      */
     private static final JFrame frame = new JFrame();
 
     /**
-     * HashMap with product ID's as keys and an aggregation of JPanels
-     * index 0 is always the main product panel, index 1 is always the cart panel (if it exists)
+     * HashMap with product ID's as keys and the cart entry of that product (if it exists)
+     */
+    private final HashMap<UUID, CartCard> cartPanelDirectory;
+
+    /**
+     * Virtualized list of product cards shown in the main panel, null until the GUI is displayed
      */
-    private final HashMap<UUID, List<JPanel>> productDirectory;
+    private VirtualProductList catalogList;
 
     /**
      * The users cart panel which consists of cart entry JPanels
@@ -53,23 +64,39 @@ public class StoreView {
     private final JLabel totalLabel;
 
     /**
-     * Username of the user (for login only, not case sensitive)
+     * Account of the user
+     */
+    private final Account account;
+
+    /**
+     * Maximum number of products shown for a search
+     */
+    private static final int SEARCH_LIMIT = 1000;
+
+    /**
+     * Current text of the search box, empty to show the whole catalog
      */
-    private final String username;
+    private String searchQuery = "";
 
     /**
-     * Password of the user (for login only)
+     * Time in milliseconds from the start of the last displayGUI until the product list first painted, -1 if never
      */
-    private final char[] password;
+    private long lastFirstPaintMillis;
 
     /**
-     * Constructor that generates a unique cartID and initializes a new ShoppingCart object
+     * System.nanoTime() value at the start of the last displayGUI
+     */
+    private long displayStartNanos;
+
+    /**
+     * Constructor that generates a unique cartID and initializes a new ShoppingCart object, used by
+     * the StoreManager when a user first logs in
      * @param store StoreManager to be associated with the user
-     * @param username String username of new StoreView user
-     * @param password String password of new StoreView user
+     * @param account Account of the user
      */
-    public StoreView(StoreManager store, String username, String password) {
+    StoreView(StoreManager store, Account account) {
         this.store = store;
+        this.account = account;
         this.cartID = UUID.randomUUID();
         this.cart = new ShoppingCart(store);
 
@@ -82,17 +109,8 @@ public class StoreView {
         totalLabel.setForeground(ClientSettings.ColorPalette.LIGHTEST_BLUE);
         totalLabel.setBorder(BorderFactory.createEmptyBorder(10,10,10,10));
 
-        this.productDirectory = new HashMap<>();
-
-        if (username.toLowerCase(Locale.ROOT).equals("username")) {
-            throw new IllegalArgumentException("Illegal username: cannot be 'username'");
-        } else if (password.equals("--------")) {
-            throw new IllegalArgumentException("Illegal password: cannot be '--------'");
-        } else {
-            this.username = username;
-            this.password = new char[password.length()];
-            for (int i = 0; i < password.length(); i++) this.password[i] = password.charAt(i);
-        }
+        this.cartPanelDirectory = new HashMap<>();
+        this.lastFirstPaintMillis = -1;
     }
 
     /**
@@ -138,7 +156,13 @@ public class StoreView {
      * Retrieves username of StoreView
      * @return String username
      */
-    public String getUsername() { return username; }
+    public String getUsername() { return account.getUsername(); }
+
+    /**
+     * Retrieves how long the product list took to first paint the last time the GUI was displayed
+     * @return long time to first paint in milliseconds, -1 if it has not painted yet
+     */
+    public long getLastFirstPaintMillis() { return lastFirstPaintMillis; }
 
     /**
      * Main entry point to initialize and run program
@@ -160,7 +184,7 @@ public class StoreView {
 
         frameInit();
 
-        displayLogin(storeManager.getUsers());
+        displayLogin(storeManager);
 
     }
 
@@ -195,9 +219,9 @@ public class StoreView {
 
     /**
      * Static method to display the login screen to select user
-     * @param users list of users in the store
+     * @param store StoreManager holding the user accounts
      */
-    private static void displayLogin(List<StoreView> users) {
+    private static void displayLogin(StoreManager store) {
 
         // refreshes any content already in frame if there are any
         frame.getContentPane().removeAll();
@@ -296,14 +320,8 @@ public class StoreView {
             String givenUser = username.getText();
             char[] givenPass = password.getPassword();
 
-            StoreView loggedInUser = null;
-            for (StoreView user : users) {
-                // checks the username and password provided with each user
-                if (user.verifyUsername(givenUser) && user.verifyPassword(givenPass)) {
-                    loggedInUser = user;
-                    break;
-                }
-            }
+            // looks the account up by username and creates its session on first login
+            StoreView loggedInUser = store.login(givenUser, givenPass);
 
             password.setText(placeholderPassword);
             password.setForeground(Color.GRAY);
@@ -366,24 +384,6 @@ public class StoreView {
         frame.toFront(); // brings the window to the front of all current windows
     }
 
-    /**
-     * Method to verify the username parameter is equal to StoreView username
-     * @param givenUsername String username to test
-     * @return boolean match
-     */
-    private boolean verifyUsername(String givenUsername) {
-        return givenUsername.toLowerCase(Locale.ROOT).equals(username.toLowerCase(Locale.ROOT));
-    }
-
-    /**
-     * Method to verify the password parameter is equal to StoreView password
-     * @param givenPassword character array password to test
-     * @return boolean match
-     */
-    private boolean verifyPassword(char[] givenPassword) {
-        return Arrays.equals(givenPassword, password);
-    }
-
     /**
      * Proxy method to clear cart of user
      */
@@ -406,11 +406,14 @@ public class StoreView {
         headerPanel.setBackground(ClientSettings.ColorPalette.DARK_BLUE);
         headerPanel.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 5));
 
-        JPanel productsPanel = new JPanel();
-        productsPanel.setLayout(new BoxLayout(productsPanel, BoxLayout.Y_AXIS));
+        // measures the time from here until the product list is first painted
+        displayStartNanos = System.nanoTime();
+        lastFirstPaintMillis = -1;
+        catalogList = new VirtualProductList(catalogEntries());
+        store.openSession(this);
 
         // setting main product panel into a scrollable viewport
-        JScrollPane scrollProductPane = new JScrollPane(productsPanel);
+        JScrollPane scrollProductPane = new JScrollPane(catalogList);
         scrollProductPane.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
         scrollProductPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED);
         scrollProductPane.getVerticalScrollBar().setUnitIncrement(20);
@@ -425,15 +428,17 @@ public class StoreView {
 
         // adds logout button
         ImageIcon logoutImg = new ImageIcon("src/com/company/images/logout.png");
-        JButton logoutButton = new JButton("<html><center>Logout of<br>" + username + "</center></html>", logoutImg);
+        JButton logoutButton = new JButton("<html><center>Logout of<br>" + getUsername() + "</center></html>", logoutImg);
         logoutButton.setMargin(new Insets(1, 5, 1, 5));
 
         logoutButton.addActionListener(e -> { // adds logout functionality, if user confirms the login is displayed
             String logoutMessage = "Are you sure you want to logout?";
             int result = JOptionPane.showConfirmDialog(frame, logoutMessage, "Confirm Logout", JOptionPane.YES_NO_CANCEL_OPTION);
             if (result == JOptionPane.OK_OPTION) {
+                store.closeSession(this);
                 cartProductPanel.removeAll();
-                displayLogin(store.getUsers());
+                cartPanelDirectory.clear();
+                displayLogin(store);
             }
         });
 
@@ -444,7 +449,25 @@ public class StoreView {
         storeLabel.setFont(ClientSettings.FontList.FONT_30);
         storeLabel.setForeground(ClientSettings.ColorPalette.LIGHTEST_BLUE);
 
+        // search box filtering the catalog as the user types
+        JTextField searchField = new JTextField(searchQuery);
+        searchField.setFont(ClientSettings.FontList.FONT_16);
+        searchField.setToolTipText("Search products by name or description");
+        searchField.setBorder(BorderFactory.createCompoundBorder(BorderFactory.createEmptyBorder(10, 20, 10, 20),
+                BorderFactory.createCompoundBorder(searchField.getBorder(), BorderFactory.createEmptyBorder(5, 5, 5, 5))));
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { applySearch(searchField.getText()); }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) { applySearch(searchField.getText()); }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) { }
+        });
+
         headerPanel.add(storeLabel, BorderLayout.LINE_START);
+        headerPanel.add(searchField, BorderLayout.CENTER);
         headerPanel.add(buttonPanel, BorderLayout.LINE_END);
 
         // creation of cart product entry panel begins
@@ -485,17 +508,9 @@ public class StoreView {
 
         cartCheckoutButton.addActionListener(e -> checkout());
 
-        // retrieving relevant data from the inventory (for products panel) and users cart (for cart panel)
-        List<ProductEntry> inventoryArray = store.getProductStockInfo();
-        List<ProductEntry> cartArray = cart.getProductStockInfo();
-
-        // updating products panel with current inventory
-        for (ProductEntry productEntry : inventoryArray) {
-            productsPanel.add(createProductPanel(productEntry));
-        }
-
-        // updating cart entries with current user cart
-        for (ProductEntry productEntry : cartArray) {
+        // updating cart entries with current user cart; product cards are only created once scrolled into view
+        cartPanelDirectory.clear();
+        for (ProductEntry productEntry : cart.getProductStockInfo()) {
             cartProductPanel.add(createCartProductPanel(productEntry));
         }
 
@@ -514,134 +529,485 @@ public class StoreView {
     }
 
     /**
-     * Method to generate a product panel
-     * @param productEntry ProductEntry to create a new panel from
-     * @return Completed JPanel
+     * Product card of the catalog: a panel showing a product with its stock and add to cart
+     * controls. Cards are reused, being bound to whichever product is scrolled into their row
      */
-    private JPanel createProductPanel(ProductEntry productEntry) {
+    private class ProductCard {
 
-        Product product = productEntry.getProduct();
-        int stock = productEntry.getStock();
+        /**
+         * Main panel of the card
+         */
+        private final JPanel productPanel;
 
-        // creates bare panel
-        JPanel productPanel = new JPanel(new BorderLayout());
-        productPanel.setPreferredSize(new Dimension(0, 200));
-        productPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 200));
-        productPanel.setBackground(Color.WHITE);
-        productPanel.setBorder(new CompoundBorder(
-                BorderFactory.createLineBorder(Color.BLACK, 2),
-                BorderFactory.createEmptyBorder(10, 10, 10, 10)));
+        /**
+         * Label showing the product image
+         */
+        private final JLabel productImage;
 
-        // adds panel to the directory, attaching it to the associated product through a HashMap key from product UUID
-        List<JPanel> panelList = new ArrayList<>();
-        panelList.add(productPanel);
-        productDirectory.put(product.getID(), panelList);
+        /**
+         * Label showing the product name
+         */
+        private final JLabel productTitle;
 
-        // gets the image from the product object and scales it correctly
-        ImageIcon img = new ImageIcon(product.getImage());
-        ImageIcon productImageIcon = new ImageIcon(img.getImage().getScaledInstance(180, 180, Image.SCALE_DEFAULT));
-        JLabel productImage = new JLabel(productImageIcon);
+        /**
+         * Label showing the product description
+         */
+        private final JLabel productDescription;
 
-        // generates the panel with all product details and interaction components
-        JPanel productDetailsPanel = new JPanel(new BorderLayout());
-        productDetailsPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 0, 0));
-        productDetailsPanel.setBackground(Color.WHITE);
+        /**
+         * Label showing the price
+         */
+        private final JLabel priceLabel;
 
-        // create title and description labels
-        JLabel productTitle = new JLabel(product.getName());
-        productTitle.setFont(ClientSettings.FontList.FONT_22);
+        /**
+         * Spinner to choose the units to add to cart
+         */
+        private final JSpinner unitSpinner;
 
-        JLabel productDescription = new JLabel("<html><body width='100%'>" + product.getDescription() +  "</body></html>");
-        productDescription.setFont(ClientSettings.FontList.FONT_16);
+        /**
+         * Stock label and unit spinner model of the card, updated in place when the stock changes
+         */
+        private final StockDisplay stockDisplay;
 
-        JPanel descriptionPanel = new JPanel(new BorderLayout());
-        descriptionPanel.add(productDescription, BorderLayout.PAGE_START);
-        descriptionPanel.setBorder(BorderFactory.createEmptyBorder(5, 0, 0, 0));
-        descriptionPanel.setBackground(Color.WHITE);
+        /**
+         * Product the card is currently showing
+         */
+        private Product product;
 
-        JPanel selectPanel = new JPanel(new BorderLayout());
-        JPanel itemCartPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 5));
-        JPanel itemInfoPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        /**
+         * Constructor that lays out an unbound card
+         */
+        private ProductCard() {
+
+            // creates bare panel
+            productPanel = new JPanel(new BorderLayout());
+            productPanel.setBackground(Color.WHITE);
+            productPanel.setBorder(new CompoundBorder(
+                    BorderFactory.createLineBorder(Color.BLACK, 2),
+                    BorderFactory.createEmptyBorder(10, 10, 10, 10)));
+
+            productImage = new JLabel();
+
+            // generates the panel with all product details and interaction components
+            JPanel productDetailsPanel = new JPanel(new BorderLayout());
+            productDetailsPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 0, 0));
+            productDetailsPanel.setBackground(Color.WHITE);
+
+            // create title and description labels
+            productTitle = new JLabel();
+            productTitle.setFont(ClientSettings.FontList.FONT_22);
+
+            productDescription = new JLabel();
+            productDescription.setFont(ClientSettings.FontList.FONT_16);
+
+            JPanel descriptionPanel = new JPanel(new BorderLayout());
+            descriptionPanel.add(productDescription, BorderLayout.PAGE_START);
+            descriptionPanel.setBorder(BorderFactory.createEmptyBorder(5, 0, 0, 0));
+            descriptionPanel.setBackground(Color.WHITE);
+
+            JPanel selectPanel = new JPanel(new BorderLayout());
+            JPanel itemCartPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 5));
+            JPanel itemInfoPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+
+            selectPanel.setBackground(Color.WHITE);
+            itemCartPanel.setBackground(Color.WHITE);
+            itemInfoPanel.setBackground(Color.WHITE);
+
+            // create add to cart button
+            JButton addToCart = new JButton("Add to Cart");
+            addToCart.setFont(ClientSettings.FontList.FONT_16);
+            addToCart.setPreferredSize(new Dimension(130, 32));
+
+            // create label indicating current stock
+            JLabel stockLabel = new JLabel();
+            stockLabel.setFont(ClientSettings.FontList.FONT_16);
+            stockLabel.setBorder(BorderFactory.createTitledBorder("Stock"));
+            // sized once for the widest stock, so stock updates only change the text
+            stockLabel.setText(Integer.toString(Integer.MAX_VALUE));
+            StockDisplay.resizeTitledLabel(stockLabel);
+
+            // create label indicating price of product in proper formatting
+            priceLabel = new JLabel();
+            priceLabel.setFont(ClientSettings.FontList.FONT_16);
+            priceLabel.setBorder(BorderFactory.createTitledBorder("Price"));
+
+            // generate spinner for user to input desired stock to add to cart
+            UnitSpinnerModel unitModel = new UnitSpinnerModel(0, 0);
+            unitSpinner = new JSpinner(unitModel);
+            stockDisplay = new StockDisplay(stockLabel, unitModel);
+            unitSpinner.setFont(ClientSettings.FontList.FONT_22);
+            unitSpinner.setPreferredSize(new Dimension(80, 32));
+
+            // action listener that gets spinner amount and adds it to the cart
+            addToCart.addActionListener(e -> {
+
+                int units = (int) unitSpinner.getValue();
+                boolean exist = cart.containsProduct(product);
+
+                if (units > 0) {
+                    addToCart(product, units);
+                    if (!exist) {
+                        // if it doesn't exist, create a new cart entry
+                        cartProductPanel.add(createCartProductPanel(new ProductEntry(product, units)));
+                    } else {
+                        // otherwise, just update the cart units label
+                        updateCartUnitsLabel(product);
+                    }
+                }
+            });
 
-        selectPanel.setBackground(Color.WHITE);
-        itemCartPanel.setBackground(Color.WHITE);
-        itemInfoPanel.setBackground(Color.WHITE);
-
-        // create add to cart button
-        JButton addToCart = new JButton("Add to Cart");
-        addToCart.setFont(ClientSettings.FontList.FONT_16);
-        addToCart.setPreferredSize(new Dimension(130, 32));
-
-        // create label indicating current stock
-        JLabel stockLabel = new JLabel(Integer.toString(stock));
-        stockLabel.setFont(ClientSettings.FontList.FONT_16);
-        setLabelWidth(stockLabel);
-        stockLabel.setBorder(BorderFactory.createTitledBorder("Stock"));
-
-        // create label indicating price of product in proper formatting
-        String priceString = new DecimalFormat("$#,##0.00").format(product.getPrice());
-        JLabel priceLabel = new JLabel(priceString);
-        priceLabel.setFont(ClientSettings.FontList.FONT_16);
-        setLabelWidth(priceLabel);
-        priceLabel.setBorder(BorderFactory.createTitledBorder("Price"));
-
-        // generate spinner for user to input desired stock to add to cart
-        SpinnerModel unitModel = new SpinnerNumberModel(0, 0, stock, 1);
-        JSpinner unitSpinner = new JSpinner(unitModel);
-        unitSpinner.setFont(ClientSettings.FontList.FONT_22);
-        unitSpinner.setPreferredSize(new Dimension(80, 32));
+            // lay out all panels in correct positions
+            itemCartPanel.add(unitSpinner);
+            itemCartPanel.add(addToCart);
 
-        // action listener that gets spinner amount and creates a new product entry
-        addToCart.addActionListener(e -> {
+            itemInfoPanel.add(priceLabel);
+            itemInfoPanel.add(stockLabel);
 
-            int units = (int) unitSpinner.getValue();
-            boolean exist = true;
+            selectPanel.add(itemInfoPanel, BorderLayout.LINE_START);
+            selectPanel.add(itemCartPanel, BorderLayout.LINE_END);
 
-            // try to find the object in the cart, if it does not exist set exist flag to false
-            try {
-                cart.getProductQuantity(product);
-            } catch (IllegalArgumentException err) {
-                exist = false;
-            }
+            productDetailsPanel.add(productTitle, BorderLayout.PAGE_START);
+            productDetailsPanel.add(descriptionPanel, BorderLayout.CENTER);
+            productDetailsPanel.add(selectPanel, BorderLayout.PAGE_END);
 
-            if (units > 0) {
-                addToCart(product, units);
-                if (!exist) {
-                    // if it doesn't exist, create a new cart entry
-                    JPanel panel = createCartProductPanel(new ProductEntry(product, units));
-                    List<JPanel> panels = productDirectory.get(product.getID());
-                    panels.add(panel);
-                    cartProductPanel.add(panel);
-                } else {
-                    // otherwise, just update the cart units label
-                    updateCartUnitsLabel(product);
+            productPanel.add(productImage, BorderLayout.LINE_START);
+            productPanel.add(productDetailsPanel, BorderLayout.CENTER);
+        }
+
+        /**
+         * Method to show a product on the card
+         * @param productEntry ProductEntry to show
+         */
+        private void bind(ProductEntry productEntry) {
+
+            product = productEntry.getProduct();
+
+            productTitle.setText(product.getName());
+            productDescription.setText("<html><body width='100%'>" + product.getDescription() + "</body></html>");
+            priceLabel.setText(formatPrice(product.getPriceCents()));
+            StockDisplay.resizeTitledLabel(priceLabel);
+
+            // shows the product image scaled to size, loading it in the background if not already cached
+            ImageCache.getShared().setIconAsync(productImage, product.getImage(), 180, 180);
+
+            stockDisplay.setStock(productEntry.getStock());
+        }
+    }
+
+    /**
+     * Spinner model of a number of units whose upper limit follows the stock. Changing the limit does
+     * not notify the spinner, as the value it shows is unchanged; a notification would have the
+     * spinner's editor reformat its text on every stock change. The editor reads the limit through
+     * getMaximum when the user types a value, and getNextValue stops at it
+     */
+    static class UnitSpinnerModel extends SpinnerNumberModel {
+
+        /**
+         * Serialization version of the model, as a SpinnerNumberModel is Serializable
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Largest number of units that can be chosen
+         */
+        private int limit;
+
+        /**
+         * Constructor for a UnitSpinnerModel counting from 0 in steps of 1
+         * @param units integer units chosen
+         * @param limit integer largest number of units that can be chosen
+         */
+        UnitSpinnerModel(int units, int limit) {
+            super(Integer.valueOf(units), 0, null, 1);
+            this.limit = limit;
+        }
+
+        /**
+         * Method to change the largest number of units that can be chosen, without notifying listeners
+         * @param limit integer largest number of units
+         */
+        void setLimit(int limit) { this.limit = limit; }
+
+        @Override
+        public Comparable<?> getMaximum() { return limit; }
+
+        @Override
+        public Object getNextValue() {
+            Object next = super.getNextValue();
+            return next != null && (Integer) next > limit ? null : next;
+        }
+    }
+
+    /**
+     * Stock widgets of a product card, holding direct references to the label and spinner model
+     * that change with the stock so an update sets them in place. Kept apart from the card, which
+     * needs a StoreView, so CardUpdateBenchmark can time updates without a display
+     */
+    static class StockDisplay {
+
+        /**
+         * Label showing the current stock, sized once for the widest stock
+         */
+        private final JLabel stockLabel;
+
+        /**
+         * Model of the unit spinner, kept for the life of the card and updated in place
+         */
+        private final UnitSpinnerModel unitModel;
+
+        /**
+         * Constructor for a StockDisplay
+         * @param stockLabel JLabel showing the stock, with a titled border
+         * @param unitModel UnitSpinnerModel of the units to add to cart
+         */
+        StockDisplay(JLabel stockLabel, UnitSpinnerModel unitModel) {
+            this.stockLabel = stockLabel;
+            this.unitModel = unitModel;
+        }
+
+        /**
+         * Method to show the current stock of the product
+         * @param stock integer stock available
+         */
+        void setStock(int stock) {
+            stockLabel.setText(Integer.toString(stock));
+            // resets the selection and updates the limit in place rather than replacing the model
+            unitModel.setLimit(stock);
+            unitModel.setValue(0);
+        }
+
+        /**
+         * Method to show stock changed by another session, keeping the units selected where possible
+         * @param stock integer stock available
+         */
+        void refreshStock(int stock) {
+            stockLabel.setText(Integer.toString(stock));
+            unitModel.setLimit(stock);
+            if ((Integer) unitModel.getValue() > stock) unitModel.setValue(stock);
+        }
+
+        /**
+         * Method to size a titled label to its current text, once when its card is built or bound
+         * @param label JLabel with a titled border
+         */
+        static void resizeTitledLabel(JLabel label) {
+            // the width is measured without the border, as it was when cards were built once per product
+            Border border = label.getBorder();
+            label.setBorder(null);
+            label.setPreferredSize(null);
+            // strangely, the calculated preferred width is does not scale linearly
+            // a square root and weight is used to compensate for this drift
+            int preferredStockWidth = (int) (Math.pow(label.getPreferredSize().width, 0.89) * 2);
+            label.setPreferredSize(new Dimension(Math.max(preferredStockWidth, 65), 38));
+            label.setBorder(border);
+        }
+    }
+
+    /**
+     * Scrollable list of the catalog that only creates product cards for the rows in view. Every row
+     * has the same height, so the visible rows follow directly from the scroll position; cards of
+     * rows scrolled out of view are kept and rebound to the rows scrolled into view
+     */
+    private class VirtualProductList extends JPanel implements Scrollable {
+
+        /**
+         * Serialization version of the list, as a JPanel is Serializable
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Height of each product row
+         */
+        private static final int ROW_HEIGHT = 200;
+
+        /**
+         * Products shown by the list
+         */
+        private List<ProductEntry> entries;
+
+        /**
+         * Cards in view by row
+         */
+        private final HashMap<Integer, ProductCard> visibleCards;
+
+        /**
+         * Cards in view by product ID
+         */
+        private final HashMap<UUID, ProductCard> cardsByProduct;
+
+        /**
+         * Cards not in view, ready to be reused
+         */
+        private final ArrayDeque<ProductCard> spareCards;
+
+        /**
+         * Constructor for a list showing the given products
+         * @param entries List of ProductEntry's to show
+         */
+        private VirtualProductList(List<ProductEntry> entries) {
+            super(null);
+            this.entries = entries;
+            this.visibleCards = new HashMap<>();
+            this.cardsByProduct = new HashMap<>();
+            this.spareCards = new ArrayDeque<>();
+        }
+
+        /**
+         * Method to show a different list of products, such as search results
+         * @param entries List of ProductEntry's to show
+         */
+        private void setEntries(List<ProductEntry> entries) {
+            for (ProductCard card : visibleCards.values()) releaseCard(card);
+            visibleCards.clear();
+            this.entries = entries;
+            revalidate();
+            repaint();
+        }
+
+        /**
+         * Method to retrieve the card currently showing a product
+         * @param product Product shown
+         * @return ProductCard of the product, null if the product is not in view
+         */
+        private ProductCard getCard(Product product) { return cardsByProduct.get(product.getID()); }
+
+        @Override
+        public void addNotify() {
+            super.addNotify();
+            // scrolling moves the list within the viewport without laying it out, so listen for it
+            if (getParent() instanceof JViewport viewport) viewport.addChangeListener(e -> updateVisibleRows());
+        }
+
+        @Override
+        public void doLayout() { updateVisibleRows(); }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            if (lastFirstPaintMillis < 0) lastFirstPaintMillis = (System.nanoTime() - displayStartNanos) / 1_000_000;
+        }
+
+        /**
+         * Method to bind cards to the rows currently in view, reusing the cards of rows out of view
+         */
+        private void updateVisibleRows() {
+
+            Rectangle visible = getVisibleRect();
+            int first = visible.y / ROW_HEIGHT;
+            int last = Math.min(entries.size() - 1, (visible.y + visible.height) / ROW_HEIGHT);
+
+            // release cards scrolled out of view
+            Iterator<Map.Entry<Integer, ProductCard>> iterator = visibleCards.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Integer, ProductCard> visibleCard = iterator.next();
+                if (visibleCard.getKey() < first || visibleCard.getKey() > last) {
+                    releaseCard(visibleCard.getValue());
+                    iterator.remove();
                 }
+            }
 
-                // set spinner max to the new stock available in inventory
-                int newStock = store.getProductQuantity(product);
-                unitSpinner.setModel(new SpinnerNumberModel(0, 0, newStock, 1));
+            // bind cards to rows scrolled into view and keep every visible card the width of the list
+            for (int row = first; row <= last; row++) {
+                ProductCard card = visibleCards.get(row);
+                if (card == null) {
+                    card = spareCards.isEmpty() ? createCard() : spareCards.pop();
+                    card.bind(entries.get(row));
+                    visibleCards.put(row, card);
+                    cardsByProduct.put(card.product.getID(), card);
+                    card.productPanel.setVisible(true);
+                }
+                card.productPanel.setBounds(0, row * ROW_HEIGHT, getWidth(), ROW_HEIGHT);
+                card.productPanel.validate();
             }
-        });
+        }
 
-        // lay out all panels in correct positions
-        itemCartPanel.add(unitSpinner);
-        itemCartPanel.add(addToCart);
+        /**
+         * Method to create a new card in the list
+         * @return ProductCard created
+         */
+        private ProductCard createCard() {
+            ProductCard card = new ProductCard();
+            add(card.productPanel);
+            return card;
+        }
 
-        itemInfoPanel.add(priceLabel);
-        itemInfoPanel.add(stockLabel);
+        /**
+         * Method to hide a card and make it available for reuse
+         * @param card ProductCard to release
+         */
+        private void releaseCard(ProductCard card) {
+            card.productPanel.setVisible(false);
+            cardsByProduct.remove(card.product.getID());
+            spareCards.push(card);
+        }
 
-        selectPanel.add(itemInfoPanel, BorderLayout.LINE_START);
-        selectPanel.add(itemCartPanel, BorderLayout.LINE_END);
+        @Override
+        public Dimension getPreferredSize() { return new Dimension(0, entries.size() * ROW_HEIGHT); }
 
-        productDetailsPanel.add(productTitle, BorderLayout.PAGE_START);
-        productDetailsPanel.add(descriptionPanel, BorderLayout.CENTER);
-        productDetailsPanel.add(selectPanel, BorderLayout.PAGE_END);
+        @Override
+        public Dimension getPreferredScrollableViewportSize() { return getPreferredSize(); }
 
-        productPanel.add(productImage, BorderLayout.LINE_START);
-        productPanel.add(productDetailsPanel, BorderLayout.CENTER);
+        @Override
+        public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) { return 20; }
 
-        // once laid out, return the generated panel
-        return productPanel;
+        @Override
+        public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+            return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportWidth() { return true; }
+
+        @Override
+        public boolean getScrollableTracksViewportHeight() { return false; }
+    }
+
+    /**
+     * Cart entry of a product, holding direct references to the widgets that change with the units
+     * in the cart or the stock left in the store
+     */
+    static class CartCard {
+
+        /**
+         * Main panel of the cart entry
+         */
+        private final JPanel productPanel;
+
+        /**
+         * Model of the units spinner, updated in place
+         */
+        private final UnitSpinnerModel unitModel;
+
+        /**
+         * Whether the spinner is being updated by the program rather than the user
+         */
+        private boolean updating;
+
+        /**
+         * Constructor for a CartCard
+         * @param productPanel JPanel of the cart entry
+         * @param unitModel UnitSpinnerModel of the units spinner
+         */
+        CartCard(JPanel productPanel, UnitSpinnerModel unitModel) {
+            this.productPanel = productPanel;
+            this.unitModel = unitModel;
+        }
+
+        /**
+         * Method to show the units in the cart and the stock left in the store
+         * @param units integer units in the cart
+         * @param stock integer stock left in the store
+         */
+        void setUnits(int units, int stock) {
+            updating = true;
+            try {
+                // the spinner is only notified, and only reformats its text, if the units changed
+                unitModel.setLimit(units + stock);
+                unitModel.setValue(units);
+            } finally {
+                updating = false;
+            }
+        }
     }
 
     /**
@@ -663,10 +1029,9 @@ public class StoreView {
                 BorderFactory.createLineBorder(Color.BLACK, 1),
                 BorderFactory.createEmptyBorder(5, 5, 5, 5)));
 
-        // create resized image
-        ImageIcon img = new ImageIcon(product.getImage());
-        ImageIcon productImageIcon = new ImageIcon(img.getImage().getScaledInstance(90, 90, Image.SCALE_DEFAULT));
-        JLabel productImage = new JLabel(productImageIcon);
+        // create resized image, loaded in the background if not already cached
+        JLabel productImage = new JLabel();
+        ImageCache.getShared().setIconAsync(productImage, product.getImage(), 90, 90);
 
         // generate title (word wrapped enabled with HTML)
         JLabel productTitle = new JLabel("<html><body width='100%'>" + product.getName() + "</body></html>");
@@ -688,13 +1053,14 @@ public class StoreView {
 
         // create spinner for units in cart
         int stock = store.getProductQuantity(product);
-        SpinnerModel unitModel = new SpinnerNumberModel(units, 0, units + stock, 1);
+        UnitSpinnerModel unitModel = new UnitSpinnerModel(units, units + stock);
         JSpinner unitSpinner = new JSpinner(unitModel);
+        CartCard cartCard = new CartCard(productPanel, unitModel);
         unitSpinner.setFont(ClientSettings.FontList.FONT_12);
         unitSpinner.setPreferredSize(new Dimension(50, 20));
 
         // create string that shows the price of each unit
-        String priceString = new DecimalFormat(" $#,##0.00").format(product.getPrice());
+        String priceString = " " + formatPrice(product.getPriceCents());
         JLabel productPrice = new JLabel(priceString);
         productPrice.setFont(ClientSettings.FontList.FONT_12);
         productPrice.setBorder(BorderFactory.createLineBorder(Color.DARK_GRAY, 1, true));
@@ -703,6 +1069,9 @@ public class StoreView {
         // allows spinner to add/remove stock and units as appropriate dynamically
         unitSpinner.addChangeListener(e -> {
 
+            // ignore changes made by setUnits rather than the user
+            if (cartCard.updating) return;
+
             int currentUnits = cart.getProductQuantity(product);
             int currentSpinnerValue = (int) unitSpinner.getValue();
 
@@ -712,10 +1081,8 @@ public class StoreView {
             if (currentSpinnerValue == 0) {
                 // if spinner is put down to 0, remove the product from cart
                 removeFromCart(product, cart.getProductQuantity(product));
-                List<JPanel> panels = productDirectory.get(product.getID());
-                cartProductPanel.remove(panels.get(1));
+                cartProductPanel.remove(cartPanelDirectory.remove(product.getID()).productPanel);
                 cartProductPanel.repaint();
-                panels.remove(1);
             } else if (increase) {
                 // if increasing, add the difference in units to cart
                 addToCart(product, currentSpinnerValue - currentUnits);
@@ -733,10 +1100,8 @@ public class StoreView {
         // if remove button is pressed, remove the item from cart
         removeFromCart.addActionListener(e -> {
             removeFromCart(product, cart.getProductQuantity(product));
-            List<JPanel> panels = productDirectory.get(product.getID());
-            cartProductPanel.remove(panels.get(1));
+            cartProductPanel.remove(cartPanelDirectory.remove(product.getID()).productPanel);
             cartProductPanel.repaint();
-            panels.remove(1);
         });
 
         selectPanel.add(removeFromCart);
@@ -749,40 +1114,19 @@ public class StoreView {
         productPanel.add(productDetailsPanel, BorderLayout.LINE_END);
         productPanel.add(productImage, BorderLayout.LINE_START);
 
-        // once all panels are laid out, return the JPanel
+        // once all panels are laid out, register and return the JPanel
+        cartPanelDirectory.put(product.getID(), cartCard);
         return productPanel;
     }
 
-    /**
-     * Method to set the label width of titled labels
-     * @param label JLabel to set width
-     */
-    private void setLabelWidth(JLabel label) {
-        // strangely, the calculated preferred width is does not scale linearly
-        // a square root and weight is used to compensate for this drift
-        int preferredStockWidth = (int) (Math.pow(label.getPreferredSize().width, 0.89) * 2);
-        label.setPreferredSize(new Dimension(Math.max(preferredStockWidth, 65), 38));
-    }
-
     /**
      * Method to refresh the current stock label of a product
      * @param product Product that requires updating
      */
     private void updateProductStockLabel(Product product) {
-        JPanel productPanel = productDirectory.get(product.getID()).get(0); // get the main panel of the product
-        // go through each list of children and get their components until navigated to the correct label/spinner
-        Component[] c1 = productPanel.getComponents();
-        Component[] c2 = ((JPanel) c1[1]).getComponents();
-        Component[] c3 = ((JPanel) c2[2]).getComponents();
-        Component[] c40 = ((JPanel) c3[0]).getComponents();
-        Component[] c41 = ((JPanel) c3[1]).getComponents();
-        JLabel label = (JLabel) c40[1];
-        JSpinner spinner = (JSpinner) c41[0];
-        int stock = store.getProductQuantity(product);
-        // once label and spinner is found, as well as the current stock, update them
-        label.setText(Integer.toString(stock));
-        // eliminates triggering of changeListener and updates the max value
-        spinner.setModel(new SpinnerNumberModel(0, 0, stock, 1));
+        // only products in view have a card, others show their current stock once scrolled into view
+        ProductCard card = catalogList != null ? catalogList.getCard(product) : null;
+        if (card != null) card.stockDisplay.setStock(store.getProductQuantity(product));
     }
 
     /**
@@ -790,16 +1134,57 @@ public class StoreView {
      * @param product Product that requires updating
      */
     private void updateCartUnitsLabel(Product product) {
-        JPanel productPanel = productDirectory.get(product.getID()).get(1); // get cart entry panel of the product
-        // like updateProductStockLabel, go through all children to find desired spinner
-        Component[] c1 = productPanel.getComponents();
-        Component[] c2 = ((JPanel) c1[0]).getComponents();
-        Component[] c3 = ((JPanel) c2[1]).getComponents();
-        JSpinner spinner = (JSpinner) c3[1];
+        CartCard cartCard = cartPanelDirectory.get(product.getID()); // get cart entry of the product
+        cartCard.setUnits(cart.getProductQuantity(product), store.getProductQuantity(product));
+    }
+
+    /**
+     * Method to show a stock change made anywhere in the store, called on the event dispatch thread
+     * @param product Product whose stock changed
+     */
+    public void refreshProductStock(Product product) {
+
+        if (catalogList == null) return;
+
         int stock = store.getProductQuantity(product);
-        int units = cart.getProductQuantity(product);
-        // update spinner model and value
-        spinner.setModel(new SpinnerNumberModel(units, 0, units + stock, 1));
+        ProductCard card = catalogList.getCard(product);
+        if (card != null) card.stockDisplay.refreshStock(stock);
+
+        CartCard cartCard = cartPanelDirectory.get(product.getID());
+        // a cart whose reservation expired is emptied off the event dispatch thread, so check it still holds the product
+        if (cartCard != null && cart.containsProduct(product)) cartCard.setUnits(cart.getProductQuantity(product), stock);
+    }
+
+    /**
+     * Method to show products added anywhere in the store, called on the event dispatch thread
+     */
+    public void refreshCatalog() {
+        if (catalogList != null && !searchQuery.isBlank()) {
+            // new products may match the search
+            catalogList.setEntries(catalogEntries());
+        } else if (catalogList != null) {
+            // the list reads the live inventory, so it only needs to be sized and laid out again
+            catalogList.revalidate();
+            catalogList.repaint();
+        }
+    }
+
+    /**
+     * Method to filter the catalog by a search
+     * @param query String text of the search box
+     */
+    private void applySearch(String query) {
+        searchQuery = query;
+        catalogList.setEntries(catalogEntries());
+        catalogList.scrollRectToVisible(new Rectangle(0, 0, 1, 1));
+    }
+
+    /**
+     * Method to retrieve the products matching the current search
+     * @return List of ProductEntry's to show, the whole live catalog if there is no search
+     */
+    private List<ProductEntry> catalogEntries() {
+        return searchQuery.isBlank() ? store.getProductStockInfo() : store.searchProducts(searchQuery, SEARCH_LIMIT);
     }
 
     /**
@@ -807,8 +1192,8 @@ public class StoreView {
      */
     private void updateCartTotal() {
         // calculates the cart total and refreshes the total checkout price
-        double newTotal = calculateCartTotal();
-        String priceString = new DecimalFormat("Total: $#,##0.00").format(newTotal);
+        long newTotal = calculateCartTotal();
+        String priceString = "Total: " + formatPrice(newTotal);
         totalLabel.setText(priceString);
     }
 
@@ -817,15 +1202,13 @@ public class StoreView {
      */
     private void checkout() {
 
-        double newTotal = calculateCartTotal();
+        long newTotal = calculateCartTotal();
 
         if (newTotal > 0) {
 
-            DecimalFormat priceFormat = new DecimalFormat("$#,##0.00");
-
             // ask user to verify they want to checkout
             String confirmMessage = "<html>Are you sure you want to checkout?<br>" +
-                    "<br><p style='font-size: large'>Total: " + priceFormat.format(newTotal) + "</p></html>";
+                    "<br><p style='font-size: large'>Total: " + formatPrice(newTotal) + "</p></html>";
             int result = JOptionPane.showConfirmDialog(frame, confirmMessage, "Confirm Checkout", JOptionPane.YES_NO_CANCEL_OPTION);
             if (result == JOptionPane.OK_OPTION) {
 
@@ -850,7 +1233,7 @@ public class StoreView {
                 String totalString = String.format("<tr> " +
                         "<td colspan='3' class='name-main'> Total: </td>" +
                         "<td class='item-main'> %s </td>" +
-                        "</tr>", priceFormat.format(newTotal));
+                        "</tr>", formatPrice(newTotal));
                 String htmlEnd = "</table></html>";
 
                 // create a formatted string the append the start string, product strings,
@@ -862,8 +1245,8 @@ public class StoreView {
                     int units = item.getStock();
                     Product product = item.getProduct();
                     String name = product.getName();
-                    double price = product.getPrice();
-                    double subtotal = price * units;
+                    long price = product.getPriceCents();
+                    long subtotal = price * units;
 
                     // create formatted string for each product listing
                     String productString = String.format("<tr> " +
@@ -871,19 +1254,24 @@ public class StoreView {
                             "<td class='item'> %s </td>" +
                             "<td class='item'> %d </td>" +
                             "<td class='item'> %s </td>" +
-                            "</tr>", name, priceFormat.format(price), units, priceFormat.format(subtotal));
+                            "</tr>", name, formatPrice(price), units, formatPrice(subtotal));
 
                     formattedString.append(productString);
                 }
                 formattedString.append(totalString);
                 formattedString.append(htmlEnd);
 
-                // display the receipt
-                dialog("plain", formattedString.toString(), "Transaction Receipt");
+                // make the transaction, then display the receipt, unless the cart expired while confirming
+                try {
+                    cart.checkout();
+                    dialog("plain", formattedString.toString(), "Transaction Receipt");
+                } catch (CartExpiredException err) {
+                    dialog("user-error", err.getMessage(), "Cart Expired");
+                }
 
-                // upon OK make the transaction, remove all cart panels, and update all requires labels
-                this.clearCart();
+                // remove all cart panels, and update all requires labels
                 cartProductPanel.removeAll();
+                cartPanelDirectory.clear();
                 cartProductPanel.repaint();
                 updateCartTotal();
             }
@@ -894,22 +1282,17 @@ public class StoreView {
     }
 
     /**
-     * Method to calculate the current cart total
-     * @return double total
+     * Method to retrieve the current cart total, kept up to date by the cart
+     * @return long total in cents
      */
-    private double calculateCartTotal() {
+    private long calculateCartTotal() { return cart.getTotalCents(); }
 
-        List<ProductEntry> cartList = cart.getProductStockInfo();
-
-        // go through all items in cart and sum the price * units bought
-        double total = 0.0;
-        for (ProductEntry item : cartList) {
-            Product product = item.getProduct();
-            int units = item.getStock();
-            total += product.getPrice() * units;
-        }
-        return total;
-    }
+    /**
+     * Method to format a price for display
+     * @param cents long price in cents
+     * @return String formatted price
+     */
+    private static String formatPrice(long cents) { return PRICE_FORMAT.format(BigDecimal.valueOf(cents, 2)); }
 
     /**
      * Method to add a product to the users cart
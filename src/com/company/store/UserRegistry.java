@@ -0,0 +1,65 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the store's accounts indexed by folded username, so registering and logging in take
+ * constant time however many accounts exist. Only account credentials are kept here; nothing of
+ * the GUI is created for an account until its user logs in
+ * @author Julian Nicolai 101154233
+ */
+public class UserRegistry {
+
+    /**
+     * Accounts by folded username
+     */
+    private final ConcurrentHashMap<String, Account> accounts;
+
+    /**
+     * Constructor for an empty registry
+     */
+    public UserRegistry() { this.accounts = new ConcurrentHashMap<>(); }
+
+    /**
+     * Method to register a new account
+     * @param username String username of the user
+     * @param password String password of the user
+     * @return Account registered
+     */
+    public Account register(String username, String password) {
+
+        Account account = new Account(username, password);
+
+        if (accounts.putIfAbsent(Account.foldUsername(username), account) != null)
+            throw new IllegalArgumentException("User already exists; choose a different username.");
+
+        return account;
+    }
+
+    /**
+     * Method to find the account matching the given credentials
+     * @param username String username, in any case
+     * @param password character array password
+     * @return Account matching, null if the username or password is incorrect
+     */
+    public Account authenticate(String username, char[] password) {
+        Account account = accounts.get(Account.foldUsername(username));
+        return account != null && account.verifyPassword(password) ? account : null;
+    }
+
+    /**
+     * Method to check whether a username is taken
+     * @param username String username, in any case
+     * @return boolean true if an account has the username
+     */
+    public boolean containsUser(String username) { return accounts.containsKey(Account.foldUsername(username)); }
+
+    /**
+     * Method to retrieve the number of registered accounts
+     * @return int number of accounts
+     */
+    public int getNumOfUsers() { return accounts.size(); }
+
+}
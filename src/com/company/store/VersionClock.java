@@ -0,0 +1,69 @@
+// Julian Nicolai 101154233
+
+package com.company.store;
+
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Clock of the versions an inventory's stock is published at, shared by all the shards of a
+ * ShardedInventory. Writers only read the clock: a change is made first, then stamped with the
+ * current version. Opening a snapshot advances the clock, so the snapshot sees every change stamped
+ * up to then and none stamped after, and writers never contend on the clock with each other. The
+ * clock also tracks the versions open snapshots read at, so writers can drop older stock values
+ * @author Julian Nicolai 101154233
+ */
+public class VersionClock {
+
+    /**
+     * Current version, stamped on changes and advanced by each snapshot
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Number of open snapshots reading at each version
+     */
+    private final TreeMap<Long, Integer> pinnedVersions = new TreeMap<>();
+
+    /**
+     * Oldest version an open snapshot may read, Long.MAX_VALUE if none are open
+     */
+    private volatile long oldestPinnedVersion = Long.MAX_VALUE;
+
+    /**
+     * Method to retrieve the version to stamp a change with; the change must be made before the
+     * clock is read
+     * @return long current version
+     */
+    long current() { return version.get(); }
+
+    /**
+     * Method to retrieve the oldest version an open snapshot may read; read after stamping, see ProductEntry.prune
+     * @return long oldest pinned version, Long.MAX_VALUE if no snapshots are open
+     */
+    long getOldestPinnedVersion() { return oldestPinnedVersion; }
+
+    /**
+     * Method to take a version for a new snapshot and advance the clock past it, keeping the stock
+     * values the snapshot reads until it is unpinned
+     * @return long version the snapshot reads at
+     */
+    synchronized long pin() {
+        // nothing is dropped while the version is taken, so no stock the snapshot needs is lost in between
+        oldestPinnedVersion = 0;
+        long pinned = version.getAndIncrement();
+        pinnedVersions.merge(pinned, 1, Integer::sum);
+        oldestPinnedVersion = pinnedVersions.firstKey();
+        return pinned;
+    }
+
+    /**
+     * Method called when a snapshot closes, to allow the stock values only it reads to be dropped
+     * @param pinned long version of the snapshot
+     */
+    synchronized void unpin(long pinned) {
+        pinnedVersions.computeIfPresent(pinned, (key, count) -> count > 1 ? count - 1 : null);
+        oldestPinnedVersion = pinnedVersions.isEmpty() ? Long.MAX_VALUE : pinnedVersions.firstKey();
+    }
+
+}